@@ -0,0 +1,110 @@
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces validation acknowledgements per response topic (one topic per
+ * publisher connection) and sends them as one message per batch, when a
+ * batch reaches maxBatch acks or every flushIntervalMs.
+ */
+public final class AckBatcher implements AutoCloseable {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    /**
+     * Publishes one ack batch to a response topic
+     */
+    public interface Sender {
+        void send(String responseTopic, byte[] payload) throws Exception;
+    }
+
+    private final String responderId;
+    private final int maxBatch;
+    private final Sender sender;
+    private final ScheduledExecutorService flusher;
+    private Map<String, ArrayNode> batches = new HashMap<>();
+
+    public AckBatcher(String responderId, int maxBatch, long flushIntervalMs, Sender sender) {
+        this.responderId = responderId;
+        this.maxBatch = Math.max(1, maxBatch);
+        this.sender = sender;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ack-batcher");
+            t.setDaemon(true);
+            return t;
+        });
+        long interval = Math.max(1L, flushIntervalMs);
+        flusher.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public static AckBatcher fromTuning(String responderId, Sender sender) {
+        TuningConfig tuning = TuningConfig.get();
+        return new AckBatcher(responderId,
+            tuning.getInt("ack.batch.size", 200),
+            tuning.getLong("ack.flush.interval.ms", 100L),
+            sender);
+    }
+
+    /**
+     * Queue an ack for the message with the given correlation data
+     */
+    public void ack(String responseTopic, byte[] correlationData, boolean ok, String errorCode) {
+        ArrayNode full = null;
+        synchronized (this) {
+            ArrayNode batch = batches.computeIfAbsent(responseTopic, t -> JSON.createArrayNode());
+            ObjectNode ack = batch.addObject();
+            ack.put("c", new String(correlationData, StandardCharsets.UTF_8));
+            ack.put("ok", ok);
+            if (errorCode != null) {
+                ack.put("code", errorCode);
+            }
+            if (batch.size() >= maxBatch) {
+                full = batches.remove(responseTopic);
+            }
+        }
+        if (full != null) {
+            send(responseTopic, full);
+        }
+    }
+
+    /**
+     * Send everything queued so far
+     */
+    public void flush() {
+        Map<String, ArrayNode> ready;
+        synchronized (this) {
+            if (batches.isEmpty()) {
+                return;
+            }
+            ready = batches;
+            batches = new HashMap<>();
+        }
+        for (Map.Entry<String, ArrayNode> e : ready.entrySet()) {
+            send(e.getKey(), e.getValue());
+        }
+    }
+
+    @Override
+    public void close() {
+        flusher.shutdown();
+        flush();
+    }
+
+    private void send(String responseTopic, ArrayNode acks) {
+        ObjectNode message = JSON.createObjectNode();
+        message.put("responder", responderId);
+        message.set("acks", acks);
+        try {
+            sender.send(responseTopic, JSON.writeValueAsBytes(message));
+        } catch (Exception e) {
+            System.err.println("Failed to send " + acks.size() + " ack(s) to " + responseTopic + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,131 @@
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * AIMD (additive increase, multiplicative decrease) publish rate controller.
+ *
+ * The publisher calls {@link #acquire()} before each send; it paces sends at
+ * the current rate. Publish completions report their latency and failures
+ * via {@link #onAck(long)} and {@link #onError()}. Every control interval
+ * the rate grows by a fixed step if the mean ack latency stayed under the
+ * target with no errors, and is multiplied by the decrease factor otherwise.
+ * Hitting the broker's Receive Maximum is reported through onError() as
+ * well, so the rate settles just below what the broker sustains.
+ */
+public final class AdaptiveRateController {
+
+    private volatile double minRate;
+    private volatile double maxRate;
+    private volatile double targetLatencyMs;
+    private final double increaseStep;
+    private final double decreaseFactor;
+    private final long controlIntervalNanos;
+
+    private volatile double rate;
+    private long nextSendNanos;
+    private long nextControlNanos;
+
+    // Feedback collected during the current control interval
+    private long intervalAcks;
+    private long intervalLatencyNanos;
+    private long intervalErrors;
+
+    public AdaptiveRateController(double initialRate, double minRate, double maxRate, double targetLatencyMs,
+                                  double increaseStep, double decreaseFactor, long controlIntervalMs) {
+        this.minRate = Math.max(0.01, minRate);
+        this.maxRate = Math.max(this.minRate, maxRate);
+        this.targetLatencyMs = targetLatencyMs;
+        this.increaseStep = increaseStep;
+        this.decreaseFactor = Math.max(0.1, Math.min(0.99, decreaseFactor));
+        this.controlIntervalNanos = Math.max(1L, controlIntervalMs) * 1_000_000L;
+        this.rate = clamp(initialRate);
+        long now = System.nanoTime();
+        this.nextSendNanos = now;
+        this.nextControlNanos = now + controlIntervalNanos;
+    }
+
+    /**
+     * Build from tuning settings; limits and target latency follow live tuning changes
+     */
+    public static AdaptiveRateController fromTuning() {
+        TuningConfig tuning = TuningConfig.get();
+        AdaptiveRateController controller = new AdaptiveRateController(
+            tuning.getDouble("publish.rate.initial", 10.0),
+            tuning.getDouble("publish.rate.min", 1.0),
+            tuning.getDouble("publish.rate.max", 10_000.0),
+            tuning.getDouble("publish.rate.target.latency.ms", 50.0),
+            tuning.getDouble("publish.rate.increase", 5.0),
+            tuning.getDouble("publish.rate.decrease", 0.7),
+            tuning.getLong("publish.rate.control.interval.ms", 500L));
+        tuning.addListener(() -> {
+            controller.minRate = Math.max(0.01, tuning.getDouble("publish.rate.min", 1.0));
+            controller.maxRate = Math.max(controller.minRate, tuning.getDouble("publish.rate.max", 10_000.0));
+            controller.targetLatencyMs = tuning.getDouble("publish.rate.target.latency.ms", 50.0);
+        });
+        return controller;
+    }
+
+    /**
+     * Block until the next send is allowed at the current rate
+     */
+    public void acquire() throws InterruptedException {
+        long now = System.nanoTime();
+        long wait;
+        synchronized (this) {
+            if (now >= nextControlNanos) {
+                adjust(now);
+            }
+            long interval = (long) (1_000_000_000L / rate);
+            // Do not let an idle period turn into a burst
+            if (nextSendNanos < now - interval) {
+                nextSendNanos = now;
+            }
+            wait = nextSendNanos - now;
+            nextSendNanos += interval;
+        }
+        if (wait > 0) {
+            LockSupport.parkNanos(wait);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+
+    public synchronized void onAck(long latencyNanos) {
+        intervalAcks++;
+        intervalLatencyNanos += latencyNanos;
+    }
+
+    public synchronized void onError() {
+        intervalErrors++;
+    }
+
+    public double currentRate() {
+        return rate;
+    }
+
+    public double targetLatencyMs() {
+        return targetLatencyMs;
+    }
+
+    public String describe() {
+        return String.format("rate=%.1f msg/s (min=%.1f, max=%.1f), targetLatency=%.1fms",
+            rate, minRate, maxRate, targetLatencyMs);
+    }
+
+    private void adjust(long now) {
+        double meanLatencyMs = intervalAcks == 0 ? 0.0 : intervalLatencyNanos / (intervalAcks * 1_000_000.0);
+        if (intervalErrors > 0 || meanLatencyMs > targetLatencyMs) {
+            rate = clamp(rate * decreaseFactor);
+        } else if (intervalAcks > 0) {
+            rate = clamp(rate + increaseStep);
+        }
+        intervalAcks = 0;
+        intervalLatencyNanos = 0;
+        intervalErrors = 0;
+        nextControlNanos = now + controlIntervalNanos;
+    }
+
+    private double clamp(double value) {
+        return Math.max(minRate, Math.min(maxRate, value));
+    }
+}
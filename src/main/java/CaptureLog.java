@@ -0,0 +1,314 @@
+import org.eclipse.paho.mqttv5.common.packet.UserProperty;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Append-only, memory-mapped capture log of received MQTT messages.
+ *
+ * A capture directory holds numbered segment files (capture-000000.seg, ...).
+ * Each segment starts with a magic number and version, followed by records:
+ *
+ *   int    length of the rest of the record (0 marks the end of the segment)
+ *   long   receive timestamp (epoch millis)
+ *   byte   QoS
+ *   short  topic length, topic bytes (UTF-8)
+ *   short  user property count, then per property:
+ *          short key length, key bytes, short value length, value bytes
+ *   int    payload length, payload bytes
+ *
+ * The writer appends into a mapped region and rolls to a new segment when
+ * the current one is full. Each record's length is written after its body,
+ * so a record torn by a crash still reads as length 0 and ends the segment. The reader maps segments read-only and hands out
+ * payloads as slices of the mapping, so no intermediate buffers are copied.
+ */
+public final class CaptureLog {
+
+    private static final int MAGIC = 0x4D513543; // "MQ5C"
+    private static final int VERSION = 1;
+    private static final int SEGMENT_HEADER_BYTES = 8;
+    public static final long DEFAULT_SEGMENT_BYTES = 64L * 1024 * 1024;
+
+    private CaptureLog() {}
+
+    /**
+     * A captured message; the payload is a read-only view into the mapped segment
+     */
+    public static final class Record {
+        public final long receivedAtMillis;
+        public final int qos;
+        public final String topic;
+        public final List<UserProperty> userProperties;
+        public final ByteBuffer payload;
+
+        Record(long receivedAtMillis, int qos, String topic, List<UserProperty> userProperties, ByteBuffer payload) {
+            this.receivedAtMillis = receivedAtMillis;
+            this.qos = qos;
+            this.topic = topic;
+            this.userProperties = userProperties;
+            this.payload = payload;
+        }
+
+        /**
+         * Copy the payload out of the mapping (the MQTT client needs a byte[])
+         */
+        public byte[] payloadBytes() {
+            byte[] bytes = new byte[payload.remaining()];
+            payload.duplicate().get(bytes);
+            return bytes;
+        }
+    }
+
+    public interface RecordHandler {
+        void onRecord(Record record) throws Exception;
+    }
+
+    /**
+     * Appends records to memory-mapped segments. Thread-safe.
+     */
+    public static final class Writer implements AutoCloseable {
+        private final Path directory;
+        private final long segmentBytes;
+        private int segmentIndex;
+        private FileChannel channel;
+        private MappedByteBuffer buffer;
+        private long recordCount;
+
+        public Writer(Path directory, long segmentBytes) throws IOException {
+            this.directory = directory;
+            this.segmentBytes = Math.max(4096L, segmentBytes);
+            Files.createDirectories(directory);
+            this.segmentIndex = nextSegmentIndex(directory);
+            openSegment(this.segmentBytes);
+        }
+
+        public synchronized void append(long receivedAtMillis, int qos, String topic,
+                                        List<UserProperty> userProperties, byte[] payload) throws IOException {
+            byte[] topicBytes = topic.getBytes(StandardCharsets.UTF_8);
+            int propCount = userProperties == null ? 0 : userProperties.size();
+            byte[][] keys = new byte[propCount][];
+            byte[][] values = new byte[propCount][];
+            int length = 8 + 1 + 2 + topicBytes.length + 2 + 4 + payload.length;
+            for (int i = 0; i < propCount; i++) {
+                UserProperty up = userProperties.get(i);
+                keys[i] = up.getKey().getBytes(StandardCharsets.UTF_8);
+                values[i] = (up.getValue() == null ? "" : up.getValue()).getBytes(StandardCharsets.UTF_8);
+                length += 2 + keys[i].length + 2 + values[i].length;
+            }
+
+            // Keep 4 bytes spare for the end-of-segment marker
+            if (buffer.remaining() < 4 + length + 4) {
+                rollSegment(4L + length + 4);
+            }
+            int start = buffer.position();
+            buffer.position(start + 4);
+            buffer.putLong(receivedAtMillis);
+            buffer.put((byte) qos);
+            buffer.putShort((short) topicBytes.length);
+            buffer.put(topicBytes);
+            buffer.putShort((short) propCount);
+            for (int i = 0; i < propCount; i++) {
+                buffer.putShort((short) keys[i].length);
+                buffer.put(keys[i]);
+                buffer.putShort((short) values[i].length);
+                buffer.put(values[i]);
+            }
+            buffer.putInt(payload.length);
+            buffer.put(payload);
+            // Publish the record last: until the length is set, readers see the end of the segment
+            buffer.putInt(start, length);
+            recordCount++;
+        }
+
+        public synchronized long recordCount() {
+            return recordCount;
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            finishSegment();
+        }
+
+        private void rollSegment(long minimumBytes) throws IOException {
+            finishSegment();
+            segmentIndex++;
+            openSegment(Math.max(segmentBytes, minimumBytes + SEGMENT_HEADER_BYTES));
+        }
+
+        private void openSegment(long size) throws IOException {
+            Path path = directory.resolve(segmentName(segmentIndex));
+            channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+        }
+
+        private void finishSegment() throws IOException {
+            if (buffer == null) {
+                return;
+            }
+            if (buffer.remaining() >= 4) {
+                buffer.putInt(0);
+            }
+            buffer.force();
+            channel.close();
+            buffer = null;
+            channel = null;
+        }
+    }
+
+    /**
+     * Read every record in a capture directory, in segment order
+     */
+    public static long read(Path directory, RecordHandler handler) throws Exception {
+        long count = 0;
+        for (Path segment : listSegments(directory)) {
+            Iterator<Record> records = new SegmentIterator(mapSegment(segment));
+            while (records.hasNext()) {
+                handler.onRecord(records.next());
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Lazily stream every record in a capture directory, in segment order.
+     * Segments are mapped as the stream reaches them.
+     */
+    public static Stream<Record> stream(Path directory) throws IOException {
+        return listSegments(directory).stream().flatMap(segment -> {
+            try {
+                return StreamSupport.stream(Spliterators.spliteratorUnknownSize(
+                    new SegmentIterator(mapSegment(segment)), Spliterator.ORDERED | Spliterator.NONNULL), false);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Records of one mapped segment, up to the end marker (or a torn tail)
+     */
+    private static final class SegmentIterator implements Iterator<Record> {
+        private final ByteBuffer buffer;
+
+        SegmentIterator(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (buffer == null || buffer.remaining() < 4) {
+                return false;
+            }
+            int length = buffer.getInt(buffer.position());
+            return length > 0 && length <= buffer.remaining() - 4;
+        }
+
+        @Override
+        public Record next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            buffer.getInt();
+            return readRecord(buffer);
+        }
+    }
+
+    /**
+     * Map a segment read-only, positioned after its header; null if it is not a readable segment.
+     * The mapping stays valid after the channel is closed.
+     */
+    private static ByteBuffer mapSegment(Path segment) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < SEGMENT_HEADER_BYTES || buffer.getInt() != MAGIC) {
+                System.err.println("Skipping non-capture file: " + segment);
+                return null;
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                System.err.println("Skipping capture segment with unsupported version " + version + ": " + segment);
+                return null;
+            }
+            return buffer;
+        }
+    }
+
+    private static Record readRecord(ByteBuffer buffer) {
+        long receivedAt = buffer.getLong();
+        int qos = buffer.get();
+        String topic = readString(buffer, buffer.getShort() & 0xFFFF);
+        int propCount = buffer.getShort() & 0xFFFF;
+        List<UserProperty> props = new ArrayList<>(propCount);
+        for (int i = 0; i < propCount; i++) {
+            String key = readString(buffer, buffer.getShort() & 0xFFFF);
+            String value = readString(buffer, buffer.getShort() & 0xFFFF);
+            props.add(new UserProperty(key, value));
+        }
+        int payloadLength = buffer.getInt();
+        ByteBuffer payload = buffer.slice();
+        payload.limit(payloadLength);
+        buffer.position(buffer.position() + payloadLength);
+        return new Record(receivedAt, qos, topic, props, payload.asReadOnlyBuffer());
+    }
+
+    private static String readString(ByteBuffer buffer, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String segmentName(int index) {
+        return String.format("capture-%06d.seg", index);
+    }
+
+    /**
+     * One past the highest existing segment number, so gaps never reuse a name
+     */
+    private static int nextSegmentIndex(Path directory) throws IOException {
+        int next = 0;
+        for (Path segment : listSegments(directory)) {
+            String name = segment.getFileName().toString();
+            try {
+                next = Math.max(next, Integer.parseInt(name.substring("capture-".length(), name.length() - ".seg".length())) + 1);
+            } catch (NumberFormatException e) {
+                // not one of ours
+            }
+        }
+        return next;
+    }
+
+    private static List<Path> listSegments(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return segments;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "capture-*.seg")) {
+            for (Path path : stream) {
+                segments.add(path);
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+}
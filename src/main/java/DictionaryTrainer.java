@@ -0,0 +1,124 @@
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * Trains a preset compression dictionary for {@link PayloadCodec} from a
+ * capture log recorded by MQTT5Subscriber --capture.
+ *
+ * Usage: DictionaryTrainer <captureDir> <outputFile> [maxBytes] [maxSamples]
+ *
+ * Counts in how many sampled payloads each substring of 8, 16 and 32 bytes
+ * occurs, then fills the dictionary with the highest scoring substrings
+ * (payload frequency x length), skipping ones already covered. Deflate
+ * matches cheapest against the end of the dictionary, so the best strings
+ * go last. Prints the average compressed size with and without it.
+ */
+public final class DictionaryTrainer {
+
+    private static final int[] GRAM_LENGTHS = {8, 16, 32};
+
+    private DictionaryTrainer() {}
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: DictionaryTrainer <captureDir> <outputFile> [maxBytes] [maxSamples]");
+            System.exit(1);
+        }
+        Path captureDir = Paths.get(args[0]);
+        Path output = Paths.get(args[1]);
+        int maxBytes = args.length > 2 ? Integer.parseInt(args[2]) : 32 * 1024; // deflate window
+        int maxSamples = args.length > 3 ? Integer.parseInt(args[3]) : 20_000;
+
+        List<byte[]> samples = new ArrayList<>();
+        CaptureLog.read(captureDir, record -> {
+            if (samples.size() >= maxSamples) {
+                return;
+            }
+            // Captures hold wire bytes; train on the original payloads
+            samples.add(PayloadCodec.get().decode(record.payloadBytes(), record.userProperties));
+        });
+        if (samples.isEmpty()) {
+            System.err.println("No payloads found in " + captureDir.toAbsolutePath());
+            System.exit(1);
+        }
+
+        byte[] dictionary = train(samples, maxBytes);
+        Files.write(output, dictionary);
+        System.out.println("Wrote " + dictionary.length + " byte dictionary to " + output.toAbsolutePath() +
+                         " (id " + PayloadCodec.idOf(dictionary) + ") from " + samples.size() + " payloads");
+
+        long raw = 0;
+        long plain = 0;
+        long withDict = 0;
+        PayloadCodec plainCodec = new PayloadCodec(Deflater.DEFAULT_COMPRESSION, Collections.emptyList(), Integer.MAX_VALUE);
+        PayloadCodec dictCodec = new PayloadCodec(Deflater.DEFAULT_COMPRESSION,
+            Collections.singletonList(dictionary), Integer.MAX_VALUE);
+        for (byte[] sample : samples) {
+            raw += sample.length;
+            plain += plainCodec.deflate(sample).length;
+            withDict += dictCodec.deflate(sample).length;
+        }
+        System.out.println(String.format("Average payload: %.1f bytes, deflate: %.1f bytes, deflate+dictionary: %.1f bytes",
+            raw / (double) samples.size(), plain / (double) samples.size(), withDict / (double) samples.size()));
+    }
+
+    static byte[] train(List<byte[]> samples, int maxBytes) {
+        Map<String, Integer> payloadCounts = new HashMap<>();
+        for (byte[] sample : samples) {
+            // ISO-8859-1 maps bytes 1:1 to chars, so substrings round-trip exactly
+            String text = new String(sample, StandardCharsets.ISO_8859_1);
+            java.util.Set<String> seen = new java.util.HashSet<>();
+            for (int length : GRAM_LENGTHS) {
+                for (int i = 0; i + length <= text.length(); i++) {
+                    String gram = text.substring(i, i + length);
+                    if (seen.add(gram)) {
+                        payloadCounts.merge(gram, 1, Integer::sum);
+                    }
+                }
+            }
+        }
+
+        List<Map.Entry<String, Integer>> candidates = new ArrayList<>(payloadCounts.entrySet());
+        // Substrings seen in a single payload do not help other payloads
+        candidates.removeIf(e -> e.getValue() < 2);
+        candidates.sort((a, b) -> Long.compare(
+            (long) b.getValue() * b.getKey().length(), (long) a.getValue() * a.getKey().length()));
+
+        List<String> chosen = new ArrayList<>();
+        StringBuilder covered = new StringBuilder();
+        int size = 0;
+        for (Map.Entry<String, Integer> candidate : candidates) {
+            String gram = candidate.getKey();
+            if (size + gram.length() > maxBytes) {
+                continue;
+            }
+            if (covered.indexOf(gram) >= 0) {
+                continue;
+            }
+            chosen.add(gram);
+            covered.append(gram);
+            size += gram.length();
+            if (size >= maxBytes - GRAM_LENGTHS[0]) {
+                break;
+            }
+        }
+
+        // Best-scoring strings last, closest to the data being compressed
+        Collections.reverse(chosen);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(size);
+        for (String gram : chosen) {
+            byte[] bytes = gram.getBytes(StandardCharsets.ISO_8859_1);
+            out.write(bytes, 0, bytes.length);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,141 @@
+import java.util.Arrays;
+
+/**
+ * Bounded-memory duplicate detector for QoS 1 redeliveries.
+ *
+ * Message identities (publisher clientId + messageId) are kept in two
+ * rotating Bloom filter generations of windowMs each, so an ID is remembered
+ * for at least windowMs and at most twice that. Memory is fixed at creation
+ * from the expected number of IDs per window and the target false-positive
+ * rate; each generation is sized for half the target because a lookup checks
+ * both. A false positive drops a genuine message, so keep the rate small.
+ */
+public final class DuplicateFilter {
+
+    private final long windowMs;
+    private final int hashCount;
+    private final long bitCount;
+    private long[] current;
+    private long[] previous;
+    private long currentStart;
+
+    private long checked;
+    private long dropped;
+
+    public DuplicateFilter(long expectedPerWindow, double falsePositiveRate, long windowMs) {
+        this(expectedPerWindow, falsePositiveRate, windowMs, System.currentTimeMillis());
+    }
+
+    DuplicateFilter(long expectedPerWindow, double falsePositiveRate, long windowMs, long now) {
+        double p = Math.max(1e-12, Math.min(0.5, falsePositiveRate)) / 2;
+        long n = Math.max(1L, expectedPerWindow);
+        long bits = (long) Math.ceil(-n * Math.log(p) / (Math.log(2) * Math.log(2)));
+        this.bitCount = Math.max(64L, (bits + 63) & ~63L);
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+        this.windowMs = Math.max(1L, windowMs);
+        this.current = new long[(int) (bitCount >>> 6)];
+        this.previous = new long[current.length];
+        this.currentStart = now;
+    }
+
+    /**
+     * Build from tuning settings; the default window matches the message expiry
+     * interval, after which the broker no longer redelivers
+     */
+    public static DuplicateFilter fromTuning() {
+        TuningConfig tuning = TuningConfig.get();
+        return new DuplicateFilter(
+            tuning.getLong("dedup.expected.per.window", 1_000_000L),
+            tuning.getDouble("dedup.false.positive.rate", 1e-6),
+            tuning.getLong("dedup.window.ms", MqttConfig.MESSAGE_EXPIRY_INTERVAL * 1000L));
+    }
+
+    /**
+     * Returns true if this (clientId, messageId) was seen recently; otherwise records it.
+     */
+    public boolean isDuplicate(String clientId, String messageId) {
+        return isDuplicate(clientId, messageId, System.currentTimeMillis());
+    }
+
+    /**
+     * As {@link #isDuplicate(String, String)} at the given time; package-private for tests
+     */
+    synchronized boolean isDuplicate(String clientId, String messageId, long now) {
+        if (now - currentStart >= windowMs) {
+            rotate(now);
+        }
+        checked++;
+
+        long hash = hash(clientId, messageId);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        // A match needs all k bits within one generation: mixing bits from both
+        // would raise the false-positive rate far above what each was sized for
+        boolean inCurrent = true;
+        boolean inPrevious = true;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = ((h1 + (long) i * h2) & Long.MAX_VALUE) % bitCount;
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            inCurrent &= (current[word] & mask) != 0;
+            inPrevious &= (previous[word] & mask) != 0;
+            current[word] |= mask;
+        }
+        boolean seen = inCurrent || inPrevious;
+        if (seen) {
+            dropped++;
+        }
+        return seen;
+    }
+
+    public synchronized long checkedCount() {
+        return checked;
+    }
+
+    public synchronized long droppedCount() {
+        return dropped;
+    }
+
+    public long memoryBytes() {
+        return bitCount / 4; // two generations of bitCount bits
+    }
+
+    private void rotate(long now) {
+        long[] recycled = previous;
+        previous = now - currentStart >= 2 * windowMs ? clear(current) : current;
+        current = clear(recycled);
+        currentStart = now;
+    }
+
+    private static long[] clear(long[] bits) {
+        Arrays.fill(bits, 0L);
+        return bits;
+    }
+
+    /**
+     * 64-bit FNV-1a over both strings (with a separator) and a murmur3 finalizer,
+     * computed without concatenating the key
+     */
+    private static long hash(String clientId, String messageId) {
+        long h = 0xcbf29ce484222325L;
+        h = fnv(h, clientId);
+        h = (h ^ 0xFFFF) * 0x100000001b3L;
+        h = fnv(h, messageId);
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static long fnv(long h, String s) {
+        if (s == null) {
+            return h;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            h = (h ^ s.charAt(i)) * 0x100000001b3L;
+        }
+        return h;
+    }
+}
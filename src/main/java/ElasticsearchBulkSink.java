@@ -0,0 +1,434 @@
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Optional sink that sends validation events straight to the Elasticsearch
+ * _bulk API, bypassing the stdout -> Filebeat -> Logstash hops.
+ *
+ * Events are queued without blocking the caller and flushed by a background
+ * thread as gzip-compressed NDJSON, whenever a batch reaches es.batch.max.events
+ * or es.batch.max.bytes, or es.flush.interval.ms has passed. Index names follow
+ * the Logstash pipeline (mqtt5-validation-yyyy.MM.dd) so the existing
+ * elasticsearch-mapping.json template applies. Failed batches are retried with
+ * exponential backoff and then spilled to es.buffer.dir; so are the items of a
+ * successful response that Elasticsearch pushed back on (status 429, such as
+ * es_rejected_execution_exception, or 5xx), while other item errors are
+ * counted and dropped since they would fail again. Spilled batches
+ * (including ones left by an earlier run) are re-sent every flush interval,
+ * one attempt per file with its own backoff, while the live queue is short.
+ *
+ * Enable with es.sink.enabled=true; point es.url at any HTTP endpoint that
+ * speaks _bulk (including a local stand-in) for testing.
+ */
+public final class ElasticsearchBulkSink implements AutoCloseable {
+
+    private static final String INDEX_PREFIX = "mqtt5-validation-";
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private enum Outcome { SENT, RETRY, REJECTED }
+
+    /**
+     * Outcome of a request and the events still to send: the whole batch, the
+     * items Elasticsearch pushed back on, or none
+     */
+    private static final class Attempt {
+        final Outcome outcome;
+        final byte[] remaining;
+        final int remainingEvents;
+
+        Attempt(Outcome outcome, byte[] remaining, int remainingEvents) {
+            this.outcome = outcome;
+            this.remaining = remaining;
+            this.remainingEvents = remainingEvents;
+        }
+    }
+
+    private static volatile ElasticsearchBulkSink instance;
+
+    private final HttpClient http;
+    private final URI bulkUri;
+    private final String authorization;
+    private final BlockingQueue<byte[]> queue;
+    private final int maxBatchEvents;
+    private final long maxBatchBytes;
+    private final long flushIntervalMs;
+    private final int maxRetries;
+    private final long retryBackoffMs;
+    private final Path bufferDir;
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong spilled = new AtomicLong();
+    private final AtomicLong itemErrors = new AtomicLong();
+    private long spillSequence;
+    // Re-send of spilled files: next attempt time and current backoff (flusher thread only)
+    private long nextResendAt;
+    private long resendBackoffMs;
+
+    ElasticsearchBulkSink(String url, String username, String password, int queueCapacity,
+                          int maxBatchEvents, long maxBatchBytes, long flushIntervalMs,
+                          int maxRetries, long retryBackoffMs, Path bufferDir) {
+        this.http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+        this.bulkUri = URI.create(url.endsWith("/") ? url + "_bulk" : url + "/_bulk");
+        this.authorization = username == null || username.isEmpty() ? null
+            : "Basic " + Base64.getEncoder().encodeToString((username + ":" + password).getBytes(StandardCharsets.UTF_8));
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.maxBatchEvents = Math.max(1, maxBatchEvents);
+        this.maxBatchBytes = Math.max(1024L, maxBatchBytes);
+        this.flushIntervalMs = Math.max(10L, flushIntervalMs);
+        this.maxRetries = Math.max(0, maxRetries);
+        this.retryBackoffMs = Math.max(1L, retryBackoffMs);
+        this.bufferDir = bufferDir;
+        this.resendBackoffMs = this.retryBackoffMs;
+        this.flusher = new Thread(this::runFlusher, "es-bulk-sink");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * The configured sink, or null when es.sink.enabled is false
+     */
+    public static ElasticsearchBulkSink get() {
+        ElasticsearchBulkSink sink = instance;
+        if (sink != null || !TuningConfig.get().getBoolean("es.sink.enabled", false)) {
+            return sink;
+        }
+        synchronized (ElasticsearchBulkSink.class) {
+            if (instance == null) {
+                TuningConfig tuning = TuningConfig.get();
+                instance = new ElasticsearchBulkSink(
+                    tuning.getString("es.url", "http://localhost:9200"),
+                    tuning.getString("es.username", ""),
+                    tuning.getString("es.password", ""),
+                    tuning.getInt("es.queue.capacity", 100_000),
+                    tuning.getInt("es.batch.max.events", 1000),
+                    tuning.getLong("es.batch.max.bytes", 5L * 1024 * 1024),
+                    tuning.getLong("es.flush.interval.ms", 1000L),
+                    tuning.getInt("es.retry.max", 5),
+                    tuning.getLong("es.retry.backoff.ms", 200L),
+                    Paths.get(tuning.getString("es.buffer.dir", "es-buffer")));
+                Runtime.getRuntime().addShutdownHook(new Thread(instance::close));
+                System.out.println("Elasticsearch bulk sink enabled: " + instance.bulkUri);
+            }
+            return instance;
+        }
+    }
+
+    /**
+     * Queue one event document. Never blocks; drops (and counts) when the queue is full.
+     *
+     * @param timestamp the event's ISO-8601 @timestamp, used to pick the daily index
+     * @param document  the event as single-line JSON
+     */
+    public void enqueue(String timestamp, String document) {
+        String index = INDEX_PREFIX + timestamp.substring(0, 10).replace('-', '.');
+        String lines = "{\"index\":{\"_index\":\"" + index + "\"}}\n" + document + "\n";
+        if (!queue.offer(lines.getBytes(StandardCharsets.UTF_8))) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    public long sentCount() { return sent.get(); }
+    public long droppedCount() { return dropped.get(); }
+    public long spilledCount() { return spilled.get(); }
+    public long itemErrorCount() { return itemErrors.get(); }
+
+    @Override
+    public void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            flusher.join(10_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        System.out.println("Elasticsearch bulk sink closed: sent=" + sent.get() + ", dropped=" + dropped.get()
+            + ", spilled=" + spilled.get() + ", itemErrors=" + itemErrors.get());
+    }
+
+    private void runFlusher() {
+        List<byte[]> batch = new ArrayList<>(maxBatchEvents);
+        while (running || !queue.isEmpty()) {
+            long deadline = System.currentTimeMillis() + flushIntervalMs;
+            long batchBytes = 0;
+            try {
+                while (batch.size() < maxBatchEvents && batchBytes < maxBatchBytes) {
+                    long wait = deadline - System.currentTimeMillis();
+                    byte[] event = wait > 0 ? queue.poll(wait, TimeUnit.MILLISECONDS) : queue.poll();
+                    if (event == null) {
+                        break;
+                    }
+                    batch.add(event);
+                    batchBytes += event.length;
+                }
+            } catch (InterruptedException e) {
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                byte[] ndjson = concat(batch, batchBytes);
+                int events = batch.size();
+                batch.clear();
+                Attempt attempt = sendWithRetry(ndjson, events);
+                if (attempt.outcome == Outcome.SENT) {
+                    nextResendAt = 0; // Elasticsearch is back; drain the spill right away
+                } else {
+                    spill(attempt.remaining, attempt.remainingEvents,
+                        attempt.outcome == Outcome.REJECTED ? ".rejected" : ".ndjson");
+                    nextResendAt = System.currentTimeMillis() + resendBackoffMs;
+                }
+            }
+            // Also on idle cycles, so the spill drains without new events
+            if (running) {
+                resendSpilled();
+            }
+        }
+    }
+
+    /**
+     * Send a batch, retrying what is left of it (the whole batch or the pushed-back items)
+     */
+    private Attempt sendWithRetry(byte[] ndjson, int events) {
+        Attempt attempt = new Attempt(Outcome.RETRY, ndjson, events);
+        long backoff = retryBackoffMs;
+        for (int i = 0; i <= maxRetries; i++) {
+            try {
+                attempt = send(attempt.remaining, attempt.remainingEvents);
+                if (attempt.outcome != Outcome.RETRY) {
+                    return attempt;
+                }
+            } catch (IOException e) {
+                System.err.println("Elasticsearch bulk request failed: " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return attempt;
+            }
+            if (i < maxRetries) {
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return attempt;
+                }
+                backoff = Math.min(backoff * 2, 30_000L);
+            }
+        }
+        return attempt;
+    }
+
+    /**
+     * POST one gzip-compressed NDJSON batch. HTTP 429/5xx is retryable; other
+     * client errors reject the whole batch. A successful response may still
+     * push back on some items, which are then what remains to be retried.
+     */
+    private Attempt send(byte[] ndjson, int events) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(bulkUri)
+            .timeout(Duration.ofSeconds(30))
+            .header("Content-Type", "application/x-ndjson")
+            .header("Content-Encoding", "gzip")
+            .POST(HttpRequest.BodyPublishers.ofByteArray(gzip(ndjson)));
+        if (authorization != null) {
+            request.header("Authorization", authorization);
+        }
+        HttpResponse<String> response = http.send(request.build(), HttpResponse.BodyHandlers.ofString());
+        int status = response.statusCode();
+        if (isRetryable(status)) {
+            System.err.println("Elasticsearch bulk request rejected with HTTP " + status);
+            return new Attempt(Outcome.RETRY, ndjson, events);
+        }
+        if (status >= 300) {
+            // Client errors will not succeed on retry
+            System.err.println("Elasticsearch bulk request failed with HTTP " + status + ": " + response.body());
+            return new Attempt(Outcome.REJECTED, ndjson, events);
+        }
+        return checkItems(ndjson, events, response.body());
+    }
+
+    /**
+     * Per-item results of a successful _bulk response: items with a retryable
+     * status are kept for another attempt, other item errors are counted
+     */
+    private Attempt checkItems(byte[] ndjson, int events, String body) throws IOException {
+        JsonNode response;
+        try {
+            response = JSON.readTree(body);
+        } catch (JsonProcessingException e) {
+            response = null;
+        }
+        if (response == null || !response.path("errors").asBoolean(false)) {
+            sent.addAndGet(events);
+            return new Attempt(Outcome.SENT, new byte[0], 0);
+        }
+        JsonNode items = response.path("items");
+        List<byte[]> documents = split(ndjson);
+        ByteArrayOutputStream retry = new ByteArrayOutputStream();
+        int retryEvents = 0;
+        int failed = 0;
+        for (int i = 0; i < documents.size(); i++) {
+            // Each item is {"<action>": {"status": ..., "error": ...}}, in request order
+            JsonNode item = items.path(i);
+            int status = item.size() > 0 ? item.elements().next().path("status").asInt(200) : 200;
+            if (isRetryable(status)) {
+                retry.write(documents.get(i));
+                retryEvents++;
+            } else if (status >= 300) {
+                failed++;
+            }
+        }
+        sent.addAndGet(events - retryEvents - failed);
+        if (failed > 0) {
+            itemErrors.addAndGet(failed);
+            System.err.println("Elasticsearch rejected " + failed + " bulk item(s)");
+        }
+        if (retryEvents == 0) {
+            return new Attempt(Outcome.SENT, new byte[0], 0);
+        }
+        System.err.println("Elasticsearch pushed back on " + retryEvents + " bulk item(s)");
+        return new Attempt(Outcome.RETRY, retry.toByteArray(), retryEvents);
+    }
+
+    private static boolean isRetryable(int status) {
+        return status == 429 || status >= 500;
+    }
+
+    /**
+     * Write a failed batch to the buffer directory. Retryable batches (.ndjson)
+     * are re-sent later; rejected ones (.rejected) are kept for inspection only.
+     */
+    private void spill(byte[] ndjson, int events, String suffix) {
+        try {
+            Files.createDirectories(bufferDir);
+            Path file = bufferDir.resolve(String.format("es-buffer-%d-%06d%s",
+                System.currentTimeMillis(), spillSequence++, suffix));
+            Files.write(file, ndjson);
+            spilled.addAndGet(events);
+            System.err.println("Spilled " + events + " validation events to " + file);
+        } catch (IOException e) {
+            dropped.addAndGet(events);
+            System.err.println("Failed to spill validation events: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Re-send spilled batches oldest first while the live queue holds less than
+     * a batch. Each file gets a single attempt; a failure backs off the next
+     * re-send instead of holding up live events with retries.
+     */
+    private void resendSpilled() {
+        if (System.currentTimeMillis() < nextResendAt || !Files.isDirectory(bufferDir)) {
+            return;
+        }
+        for (Path file : spilledFiles()) {
+            if (queue.size() >= maxBatchEvents || !resendOne(file)) {
+                return;
+            }
+        }
+    }
+
+    private List<Path> spilledFiles() {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(bufferDir, "es-buffer-*.ndjson")) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to list spilled events in " + bufferDir + ": " + e.getMessage());
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    /**
+     * One attempt at a spilled file; returns false when the re-send should stop for now
+     */
+    private boolean resendOne(Path file) {
+        Outcome outcome = Outcome.RETRY;
+        try {
+            byte[] ndjson = Files.readAllBytes(file);
+            int events = split(ndjson).size();
+            Attempt attempt = send(ndjson, events);
+            outcome = attempt.outcome;
+            if (outcome == Outcome.SENT) {
+                Files.delete(file);
+            } else if (outcome == Outcome.REJECTED) {
+                Files.move(file, file.resolveSibling(file.getFileName() + ".rejected"));
+            } else if (attempt.remainingEvents < events) {
+                Files.write(file, attempt.remaining); // keep only the pushed-back items
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to re-send spilled events from " + file + ": " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+        if (outcome == Outcome.RETRY) {
+            nextResendAt = System.currentTimeMillis() + resendBackoffMs;
+            resendBackoffMs = Math.min(resendBackoffMs * 2, 30_000L);
+            return false;
+        }
+        resendBackoffMs = retryBackoffMs;
+        return true;
+    }
+
+    private static byte[] concat(List<byte[]> parts, long totalBytes) {
+        byte[] out = new byte[(int) totalBytes];
+        int offset = 0;
+        for (byte[] part : parts) {
+            System.arraycopy(part, 0, out, offset, part.length);
+            offset += part.length;
+        }
+        return out;
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.max(512, data.length / 4));
+        try (OutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(data);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Split NDJSON into per-event action and document line pairs
+     */
+    private static List<byte[]> split(byte[] ndjson) {
+        List<byte[]> documents = new ArrayList<>();
+        int start = 0;
+        int lines = 0;
+        for (int i = 0; i < ndjson.length; i++) {
+            if (ndjson[i] == '\n' && ++lines % 2 == 0) {
+                documents.add(Arrays.copyOfRange(ndjson, start, i + 1));
+                start = i + 1;
+            }
+        }
+        return documents;
+    }
+}
@@ -0,0 +1,317 @@
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Classifies validation and SERDES errors into stable error codes for
+ * aggregation in Kibana.
+ *
+ * Structured details are read from the exception chain first: any exception
+ * exposing validation messages (getValidationMessages()/getMessages()) whose
+ * elements carry a keyword (getType()/getKeyword()), an instance JSON pointer
+ * (getInstanceLocation()/getPath()) and a schema path (getSchemaLocation()/
+ * getSchemaPath()) is mapped by keyword. Accessors are resolved once per
+ * exception class. Otherwise the message is matched against an ordered rule
+ * set compiled into a single case-insensitive pattern; the first rule in the
+ * list wins when several match. Rules can be replaced with a properties file
+ * (error.rules.file) of "code=regex" lines; invalid patterns are reported and
+ * skipped, and a code listed twice matches either pattern at its first position.
+ */
+public final class ErrorClassifier {
+
+    public static final String UNKNOWN = "unknown";
+    public static final String VALIDATION_ERROR = "validation_error";
+    private static final int CACHE_LIMIT = 1024;
+    private static final String GROUP_PREFIX = "rule";
+    private static final int FLAGS = Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE;
+
+    /**
+     * Result of classifying one error. Fields other than code may be null.
+     */
+    public static final class Classification {
+        public final String code;
+        public final String keyword;
+        public final String pointer;
+        public final String schemaPath;
+
+        Classification(String code, String keyword, String pointer, String schemaPath) {
+            this.code = code;
+            this.keyword = keyword;
+            this.pointer = pointer;
+            this.schemaPath = schemaPath;
+        }
+    }
+
+    // JSON Schema keyword -> error code
+    private static final Map<String, String> KEYWORD_CODES = new ConcurrentHashMap<>();
+    static {
+        KEYWORD_CODES.put("required", "missing_field");
+        KEYWORD_CODES.put("dependentRequired", "missing_field");
+        for (String k : new String[] {"maximum", "minimum", "exclusiveMaximum", "exclusiveMinimum",
+                                      "maxLength", "minLength", "maxItems", "minItems"}) {
+            KEYWORD_CODES.put(k, "value_out_of_range");
+        }
+        KEYWORD_CODES.put("type", "type_mismatch");
+        KEYWORD_CODES.put("additionalProperties", "unexpected_field");
+        KEYWORD_CODES.put("unevaluatedProperties", "unexpected_field");
+        for (String k : new String[] {"enum", "const", "pattern", "format"}) {
+            KEYWORD_CODES.put(k, "invalid_value");
+        }
+    }
+
+    // Default fallback rules, in priority order
+    private static final String[][] DEFAULT_RULES = {
+        {"schema_mismatch", "schema mismatch"},
+        {"schema_not_found", "failed to resolve schema|schema not found|artifact not found|no artifact with"},
+        {"connectivity_issue", "connection (?:refused|reset|closed)|timed? ?out|unknownhost|no route to host"},
+        {"missing_field", "required propert|is missing but it is required|missing required"},
+        {"value_out_of_range", "\\b(?:exclusive)?(?:maximum|minimum)\\b|greater than|less than|must be at (?:most|least)|out of range"},
+        {"type_mismatch", "\\b\\w+ found, \\w+ expected|is not of type|does not match any allowed primitive type|type mismatch"},
+        {"unexpected_field", "additional propert|is not defined in the schema"},
+        {"invalid_value", "does not have a value in the enumeration|does not match the regex|does not match the \\w+ pattern|\\bconst\\b"},
+        {"decode_error", "compressed payload|compression dictionary"},
+        {"parse_error", "unexpected character|unrecognized token|end-of-input|malformed json|json parse"},
+    };
+
+    private static final ErrorClassifier INSTANCE = create();
+
+    private static final ClassValue<Method> MESSAGES_ACCESSOR = new ClassValue<Method>() {
+        @Override
+        protected Method computeValue(Class<?> type) {
+            return findAccessor(type, Collection.class, "getValidationMessages", "getMessages", "getErrors");
+        }
+    };
+    private static final ClassValue<Method[]> DETAIL_ACCESSORS = new ClassValue<Method[]>() {
+        @Override
+        protected Method[] computeValue(Class<?> type) {
+            return new Method[] {
+                findAccessor(type, null, "getType", "getKeyword", "getMessageKey"),
+                findAccessor(type, null, "getInstanceLocation", "getPath", "getPointer"),
+                findAccessor(type, null, "getSchemaLocation", "getSchemaPath", "getEvaluationPath")
+            };
+        }
+    };
+
+    private final String[] ruleCodes;
+    private final String[] groupNames;
+    private final Pattern combined;
+    private final Map<String, Classification> cache = new ConcurrentHashMap<>();
+
+    ErrorClassifier(Map<String, String> rules) {
+        ruleCodes = rules.keySet().toArray(new String[0]);
+        groupNames = new String[ruleCodes.length];
+        StringBuilder regex = new StringBuilder();
+        int i = 0;
+        for (String pattern : rules.values()) {
+            if (i > 0) {
+                regex.append('|');
+            }
+            groupNames[i] = GROUP_PREFIX + i;
+            regex.append("(?<").append(groupNames[i++]).append('>').append(pattern).append(')');
+        }
+        combined = Pattern.compile(regex.toString(), FLAGS);
+    }
+
+    /**
+     * Never fails class initialization: a rule set that still does not compile
+     * as a whole falls back to the defaults
+     */
+    private static ErrorClassifier create() {
+        try {
+            return new ErrorClassifier(loadRules());
+        } catch (RuntimeException e) {
+            System.err.println("Invalid error rules, using defaults: " + e.getMessage());
+            return new ErrorClassifier(defaultRules());
+        }
+    }
+
+    public static ErrorClassifier get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Classify an exception, preferring structured details from its cause chain
+     */
+    public Classification classify(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause() == t ? null : t.getCause()) {
+            Classification structured = fromStructured(t);
+            if (structured != null) {
+                return structured;
+            }
+        }
+        return classify(error == null ? null : error.getMessage());
+    }
+
+    /**
+     * Classify a bare error message with the fallback rules
+     */
+    public Classification classify(String errorMessage) {
+        if (errorMessage == null) {
+            return new Classification(UNKNOWN, null, null, null);
+        }
+        Classification cached = cache.get(errorMessage);
+        if (cached != null) {
+            return cached;
+        }
+        Classification result = new Classification(matchRules(errorMessage), null, null, null);
+        if (cache.size() >= CACHE_LIMIT) {
+            cache.clear();
+        }
+        cache.put(errorMessage, result);
+        return result;
+    }
+
+    private String matchRules(String message) {
+        Matcher matcher = combined.matcher(message);
+        int best = ruleCodes.length;
+        while (best > 0 && matcher.find()) {
+            for (int i = 0; i < best; i++) {
+                if (matcher.start(groupNames[i]) >= 0) {
+                    best = i;
+                    break;
+                }
+            }
+        }
+        return best < ruleCodes.length ? ruleCodes[best] : VALIDATION_ERROR;
+    }
+
+    private static Classification fromStructured(Throwable t) {
+        Method messagesAccessor = MESSAGES_ACCESSOR.get(t.getClass());
+        if (messagesAccessor == null) {
+            return null;
+        }
+        Object first;
+        try {
+            Collection<?> messages = (Collection<?>) messagesAccessor.invoke(t);
+            if (messages == null || messages.isEmpty()) {
+                return null;
+            }
+            first = messages.iterator().next();
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+        if (first == null) {
+            return null;
+        }
+        Method[] details = DETAIL_ACCESSORS.get(first.getClass());
+        String keyword = invokeToString(details[0], first);
+        if (keyword == null) {
+            return null;
+        }
+        String code = KEYWORD_CODES.getOrDefault(keyword, VALIDATION_ERROR);
+        return new Classification(code, keyword, invokeToString(details[1], first), invokeToString(details[2], first));
+    }
+
+    private static String invokeToString(Method method, Object target) {
+        if (method == null) {
+            return null;
+        }
+        try {
+            Object value = method.invoke(target);
+            return value == null ? null : value.toString();
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static Method findAccessor(Class<?> type, Class<?> returnType, String... names) {
+        for (String name : names) {
+            try {
+                Method method = type.getMethod(name);
+                if (returnType == null || returnType.isAssignableFrom(method.getReturnType())) {
+                    try {
+                        // Public methods on non-public implementation classes need this
+                        method.setAccessible(true);
+                    } catch (RuntimeException e) {
+                        // module-restricted; invoke may still succeed
+                    }
+                    return method;
+                }
+            } catch (NoSuchMethodException e) {
+                // try next name
+            }
+        }
+        return null;
+    }
+
+    private static Map<String, String> loadRules() {
+        Map<String, String> rules = new LinkedHashMap<>();
+        String file = TuningConfig.get().getString("error.rules.file", "");
+        if (!file.isEmpty()) {
+            try {
+                for (String line : readRuleLines(file)) {
+                    int eq = line.indexOf('=');
+                    if (eq > 0) {
+                        addRule(rules, line.substring(0, eq).trim(), line.substring(eq + 1).trim(), file);
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Failed to load error rules from " + file + ": " + e.getMessage());
+                rules.clear();
+            }
+        }
+        if (rules.isEmpty()) {
+            if (!file.isEmpty()) {
+                System.err.println("No usable error rules in " + file + ", using defaults");
+            }
+            return defaultRules();
+        }
+        return rules;
+    }
+
+    private static Map<String, String> defaultRules() {
+        Map<String, String> rules = new LinkedHashMap<>();
+        for (String[] rule : DEFAULT_RULES) {
+            rules.put(rule[0], rule[1]);
+        }
+        return rules;
+    }
+
+    /**
+     * Add one rule after compiling it on its own; invalid ones are logged and skipped
+     */
+    private static void addRule(Map<String, String> rules, String code, String regex, String file) {
+        if (regex.contains("(?<" + GROUP_PREFIX)) {
+            System.err.println("Skipping error rule " + code + " in " + file + ": group names starting with '"
+                + GROUP_PREFIX + "' are reserved");
+            return;
+        }
+        try {
+            Pattern.compile(regex, FLAGS);
+        } catch (PatternSyntaxException e) {
+            System.err.println("Skipping invalid error rule " + code + " in " + file + ": " + e.getDescription());
+            return;
+        }
+        String existing = rules.get(code);
+        if (existing != null) {
+            System.err.println("Error rule " + code + " is listed more than once in " + file + "; matching either pattern");
+            regex = "(?:" + existing + ")|(?:" + regex + ")";
+        }
+        rules.put(code, regex);
+    }
+
+    /**
+     * Read "code=regex" lines in file order (java.util.Properties would lose the order)
+     */
+    private static List<String> readRuleLines(String file) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (String line : Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8)) {
+            String trimmed = line.trim();
+            if (!trimmed.isEmpty() && !trimmed.startsWith("#")) {
+                lines.add(trimmed);
+            }
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,95 @@
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Summarizes the PipelineEvents in a JFR recording into per-stage latency
+ * breakdowns: count, failures, payload bytes and latency percentiles.
+ *
+ * Usage: JfrStageReport <recording.jfr> [topic|schemaId]
+ *
+ * The optional second argument splits every stage by that field.
+ * PublishComplete reports its latency field and Dispatch also reports its
+ * queue wait as a separate "mqtt5.Dispatch.queueWait" row.
+ */
+public final class JfrStageReport {
+
+    private static final String PREFIX = "mqtt5.";
+
+    /**
+     * Latencies and totals collected for one stage (and group)
+     */
+    private static final class Stage {
+        final List<Long> nanos = new ArrayList<>();
+        long failures;
+        long payloadBytes;
+
+        void add(long latencyNanos, boolean success, long payloadSize) {
+            nanos.add(latencyNanos);
+            if (!success) {
+                failures++;
+            }
+            payloadBytes += payloadSize;
+        }
+    }
+
+    private JfrStageReport() {}
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: JfrStageReport <recording.jfr> [topic|schemaId]");
+            System.exit(1);
+        }
+        String groupBy = args.length > 1 ? args[1] : null;
+
+        Map<String, Stage> stages = new TreeMap<>();
+        for (RecordedEvent event : RecordingFile.readAllEvents(Paths.get(args[0]))) {
+            String name = event.getEventType().getName();
+            if (!name.startsWith(PREFIX)) {
+                continue;
+            }
+            String group = groupBy == null ? "" : " [" + event.getString(groupBy) + "]";
+            boolean success = event.getBoolean("success");
+            long payloadSize = event.getLong("payloadSize");
+            long latency = "mqtt5.PublishComplete".equals(name)
+                ? event.getLong("latency")
+                : event.getDuration().toNanos();
+            stages.computeIfAbsent(name + group, k -> new Stage()).add(latency, success, payloadSize);
+            if ("mqtt5.Dispatch".equals(name)) {
+                stages.computeIfAbsent(name + ".queueWait" + group, k -> new Stage())
+                      .add(event.getLong("queueWait"), true, 0);
+            }
+        }
+
+        if (stages.isEmpty()) {
+            System.out.println("No " + PREFIX + "* events in " + args[0] +
+                             " (record with settings=mqtt5-pipeline.jfc)");
+            return;
+        }
+        System.out.println(String.format("%-48s %9s %7s %11s %9s %9s %9s %9s %9s",
+            "stage", "count", "failed", "avg bytes", "mean ms", "p50 ms", "p90 ms", "p99 ms", "max ms"));
+        for (Map.Entry<String, Stage> e : stages.entrySet()) {
+            Stage stage = e.getValue();
+            long[] sorted = stage.nanos.stream().mapToLong(Long::longValue).sorted().toArray();
+            long total = 0;
+            for (long n : sorted) {
+                total += n;
+            }
+            System.out.println(String.format("%-48s %9d %7d %11.1f %9.3f %9.3f %9.3f %9.3f %9.3f",
+                e.getKey(), sorted.length, stage.failures, stage.payloadBytes / (double) sorted.length,
+                total / (sorted.length * 1_000_000.0),
+                percentileMs(sorted, 50), percentileMs(sorted, 90), percentileMs(sorted, 99),
+                sorted[sorted.length - 1] / 1_000_000.0));
+        }
+    }
+
+    private static double percentileMs(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(sorted.length * percentile / 100.0) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1_000_000.0;
+    }
+}
@@ -0,0 +1,61 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency recorder with count, mean, max and approximate
+ * percentiles from power-of-two microsecond buckets.
+ */
+public final class LatencyStats {
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+    // bucket i holds latencies in [2^(i-1), 2^i) microseconds
+    private final AtomicLongArray buckets = new AtomicLongArray(64);
+
+    public void record(long nanos) {
+        long n = Math.max(0L, nanos);
+        count.increment();
+        totalNanos.add(n);
+        maxNanos.accumulateAndGet(n, Math::max);
+        buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(n / 1000));
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    public double meanMs() {
+        long c = count.sum();
+        return c == 0 ? 0.0 : totalNanos.sum() / (c * 1_000_000.0);
+    }
+
+    public double maxMs() {
+        return maxNanos.get() / 1_000_000.0;
+    }
+
+    /**
+     * Upper bound of the bucket holding the given percentile (0-100), in milliseconds
+     */
+    public double percentileMs(double percentile) {
+        long c = count.sum();
+        if (c == 0) {
+            return 0.0;
+        }
+        long target = (long) Math.ceil(c * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < 64; i++) {
+            seen += buckets.get(i);
+            if (seen >= target) {
+                return Math.min((1L << i) / 1000.0, maxMs());
+            }
+        }
+        return maxMs();
+    }
+
+    public String summary() {
+        return String.format("count=%d mean=%.2fms p50<=%.2fms p99<=%.2fms max=%.2fms",
+            count(), meanMs(), percentileMs(50), percentileMs(99), maxMs());
+    }
+}
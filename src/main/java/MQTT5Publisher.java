@@ -1,12 +1,6 @@
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
-import org.eclipse.paho.mqttv5.client.MqttAsyncClient;
-import org.eclipse.paho.mqttv5.client.MqttCallback;
-import org.eclipse.paho.mqttv5.client.MqttConnectionOptions;
-import org.eclipse.paho.mqttv5.client.MqttDisconnectResponse;
-import org.eclipse.paho.mqttv5.client.IMqttToken;
-import org.eclipse.paho.mqttv5.client.persist.MemoryPersistence;
 import org.eclipse.paho.mqttv5.common.MqttException;
 import org.eclipse.paho.mqttv5.common.MqttMessage;
 import org.eclipse.paho.mqttv5.common.packet.MqttProperties;
@@ -15,11 +9,32 @@ import org.eclipse.paho.mqttv5.common.packet.MqttProperties;
 public class MQTT5Publisher {
     
     private static final ObjectMapper JSON = new ObjectMapper();
-    private MqttAsyncClient client;
-    private final String clientId;
+    private final PublisherPool pool;
+    private final TopicStrategy topicStrategy = new TopicStrategy();
+    // Awaiting subscriber validation acks, keyed by correlation data (ack.enabled)
+    private final PendingRequests pendingAcks;
+    // AIMD pacing from broker feedback when publish.rate.mode=adaptive, else fixed interval
+    private final AdaptiveRateController rateController;
     
     public MQTT5Publisher() {
-        this.clientId = MqttConfig.generateClientId("mqtt5-publisher");
+        this.pool = new PublisherPool(TuningConfig.get().getInt("publisher.connections", MqttConfig.PUBLISHER_CONNECTIONS));
+        if ("adaptive".equals(TuningConfig.get().getString("publish.rate.mode", "fixed"))) {
+            this.rateController = AdaptiveRateController.fromTuning();
+            pool.setRateController(rateController);
+            if (TuningConfig.get().publishQos() == 0) {
+                // QoS 0 completes on socket write and ignores Receive Maximum: no broker feedback
+                System.err.println("WARNING: publish.rate.mode=adaptive needs publish.qos=1 or 2; " +
+                                 "with QoS 0 the rate only ramps up to publish.rate.max");
+            }
+        } else {
+            this.rateController = null;
+        }
+        if (TuningConfig.get().getBoolean("ack.enabled", true)) {
+            this.pendingAcks = new PendingRequests(TuningConfig.get().getLong("ack.timeout.ms", 10_000L));
+            pool.setResponseHandler(message -> pendingAcks.onResponse(message.getPayload()));
+        } else {
+            this.pendingAcks = null;
+        }
     }
     
     public static void main(String[] args) {
@@ -33,10 +48,34 @@ public class MQTT5Publisher {
             System.exit(1);
         }
         
+        // Apply tuning file changes (QoS, publish interval, sampling, validation) while running
+        TuningConfig.get().startWatching();
+        
+        // Replay mode: --replay <captureDir> [--speed original|max|<factor>]
+        String replayDir = null;
+        double speed = 1.0;
+        for (int i = 0; i < args.length - 1; i++) {
+            if ("--replay".equals(args[i])) {
+                replayDir = args[i + 1];
+            } else if ("--speed".equals(args[i])) {
+                try {
+                    speed = parseSpeed(args[i + 1]);
+                } catch (NumberFormatException e) {
+                    System.err.println("Invalid --speed: " + args[i + 1]);
+                    System.err.println("Usage: MQTT5Publisher [--replay <captureDir> [--speed original|max|<factor>]]");
+                    System.exit(2);
+                }
+            }
+        }
+        
         MQTT5Publisher publisher = new MQTT5Publisher();
         try {
             publisher.connect();
-            publisher.publishMessages();
+            if (replayDir != null) {
+                publisher.replay(java.nio.file.Paths.get(replayDir), speed);
+            } else {
+                publisher.publishMessages();
+            }
             publisher.disconnect();
         } catch (Exception e) {
             e.printStackTrace();
@@ -44,83 +83,19 @@ public class MQTT5Publisher {
     }
     
     public void connect() throws MqttException, InterruptedException {
-        System.out.println("Connecting to MQTT5 broker: " + MqttConfig.BROKER_URL);
-        System.out.println("Using username: " + MqttConfig.USERNAME);
-        System.out.println("Client ID: " + clientId);
-        
-        // Create MQTT5 client
-        client = new MqttAsyncClient(MqttConfig.BROKER_URL, clientId, new MemoryPersistence());
-        
-        // Set up connection options for MQTT5
-        MqttConnectionOptions options = new MqttConnectionOptions();
-        options.setCleanStart(true); // MQTT5 uses cleanStart instead of cleanSession
-        options.setKeepAliveInterval(MqttConfig.KEEP_ALIVE_INTERVAL);
-        options.setAutomaticReconnect(true);
-        options.setConnectionTimeout(MqttConfig.CONNECTION_TIMEOUT);
-        
-        // Set authentication credentials from config (if provided)
-        if (MqttConfig.USERNAME != null && !MqttConfig.USERNAME.isEmpty()) {
-            options.setUserName(MqttConfig.USERNAME);
-            options.setPassword(MqttConfig.PASSWORD.getBytes());
-        }
-        
-        // Set callback for connection events
-        client.setCallback(new MqttCallback() {
-            @Override
-            public void disconnected(MqttDisconnectResponse disconnectResponse) {
-                System.out.println("Disconnected: " + disconnectResponse.getReasonString());
-            }
-            
-            @Override
-            public void mqttErrorOccurred(MqttException exception) {
-                System.err.println("MQTT Error: " + exception.getMessage());
-            }
-            
-            @Override
-            public void messageArrived(String topic, MqttMessage message) throws Exception {
-                // Not used in publisher, but required by interface
-            }
-            
-            @Override
-            public void deliveryComplete(IMqttToken token) {
-                System.out.println("Message delivery completed");
-            }
-            
-            @Override
-            public void connectComplete(boolean reconnect, String serverURI) {
-                System.out.println("Connection completed to: " + serverURI + 
-                                 (reconnect ? " (reconnected)" : " (initial connection)"));
-            }
-            
-            @Override
-            public void authPacketArrived(int reasonCode, MqttProperties properties) {
-                System.out.println("Auth packet received with reason code: " + reasonCode);
-            }
-        });
-        
-        // Connect synchronously for simplicity
-        try {
-            client.connect(options);
-            System.out.println("Successfully connected to MQTT5 broker with authentication");
-        } catch (MqttException e) {
-            System.err.println("Failed to connect: " + e.getMessage());
-            if (e.getMessage().contains("Not authorized")) {
-                System.err.println("   Authentication failed - check username/password in MqttConfig.java");
-            }
-            throw e;
-        }
+        pool.connect();
     }
     
     public void publishMessages() throws MqttException, InterruptedException {
-        System.out.println("Publishing messages to topic: " + MqttConfig.TOPIC_BASE);
+        System.out.println("Publishing messages under topic: " + MqttConfig.TOPIC_BASE + " (per-sensor sharding)");
         
         boolean useSerdes = MqttConfig.JSON_SERDES_ENABLED && MqttConfig.JSON_PUBLISH_WITH_SERDES;
-        com.solace.serdes.jsonschema.JsonSchemaSerializer<JsonNode> serializer = null;
-        if (useSerdes) {
-            serializer = SerdesSupport.getJsonSerializer();
-        }
         
         for (int i = 1; i <= 100; i++) {
+            if (rateController != null) {
+                rateController.acquire();
+            }
+            
             // Every 5th message: send invalid payload to test schema validation
             boolean sendInvalid = (i % 5 == 0);
             
@@ -128,9 +103,14 @@ public class MQTT5Publisher {
             String sensorId = "sensor-" + String.format("%03d", (i % 10) + 1);
             double temperature = 20.0 + (i * 2.5); // Simulated temperature reading
             String timestamp = java.time.Instant.now().toString();
+            String topic = topicStrategy.topicFor(sensorId);
+            // Sensor affinity: one sensor always uses the same (healthy) connection
+            PublisherPool.Connection connection = pool.select(sensorId);
+            String clientId = connection.clientId();
             
             byte[] outBytes;
             java.util.Map<String, Object> serdesHeaders = new java.util.HashMap<>();
+            boolean schemaValidated = false; // serializer validated this payload (eligible for a trust mark)
             if (useSerdes) {
                 try {
                     JsonNode jsonNode;
@@ -148,8 +128,24 @@ public class MQTT5Publisher {
                     // Pre-populate SCHEMA_ID_STRING with the artifact ID for deserializer
                     serdesHeaders.put("SCHEMA_ID_STRING", MqttConfig.SCHEMA_ARTIFACT_ID);
                     
+                    // Fetched per message: rebuilt when validation.enabled changes, otherwise the same instance
+                    SerdesSupport.ConfiguredSerializer serializer = SerdesSupport.getConfiguredJsonSerializer();
+                    
                     // Use artifact ID as the "topic" key for schema resolution
-                    outBytes = serializer.serialize(MqttConfig.SCHEMA_ARTIFACT_ID, jsonNode, serdesHeaders);
+                    PipelineEvents.Serialize serializeEvent = new PipelineEvents.Serialize();
+                    serializeEvent.begin();
+                    try {
+                        outBytes = serializer.serializer.serialize(MqttConfig.SCHEMA_ARTIFACT_ID, jsonNode, serdesHeaders);
+                        serializeEvent.payloadSize = outBytes.length;
+                        serializeEvent.success = true;
+                    } finally {
+                        serializeEvent.end();
+                        if (serializeEvent.shouldCommit()) {
+                            serializeEvent.topic = topic;
+                            serializeEvent.schemaId = MqttConfig.SCHEMA_ARTIFACT_ID;
+                            serializeEvent.commit();
+                        }
+                    }
                     
                     if (sendInvalid) {
                         System.err.println("WARNING: Invalid message " + i + " was NOT rejected by schema validation!");
@@ -160,7 +156,7 @@ public class MQTT5Publisher {
                             ValidationLogger.ClientType.PUBLISHER,
                             String.valueOf(i),
                             MqttConfig.SCHEMA_ARTIFACT_ID,
-                            MqttConfig.TOPIC_BASE,
+                            topic,
                             false,
                             "Invalid message was not rejected by schema validation",
                             clientId,
@@ -169,12 +165,15 @@ public class MQTT5Publisher {
                             200.0
                         );
                     } else {
-                        // ELK: Log successful validation (sampled at 5%)
+                        // The flag of the serializer that produced these bytes, not the live tuning value
+                        schemaValidated = serializer.validates;
+                        
+                        // ELK: Log successful validation (sampled)
                         ValidationLogger.logSuccessfulValidation(
                             ValidationLogger.ClientType.PUBLISHER,
                             String.valueOf(i),
                             MqttConfig.SCHEMA_ARTIFACT_ID,
-                            MqttConfig.TOPIC_BASE,
+                            topic,
                             clientId,
                             sensorId
                         );
@@ -188,8 +187,8 @@ public class MQTT5Publisher {
                         ValidationLogger.logPublisherValidationFailure(
                             String.valueOf(i),
                             MqttConfig.SCHEMA_ARTIFACT_ID,
-                            MqttConfig.TOPIC_BASE,
-                            e.getMessage(),
+                            topic,
+                            e,
                             clientId,
                             sensorId,
                             200.0
@@ -204,7 +203,7 @@ public class MQTT5Publisher {
                             ValidationLogger.ClientType.PUBLISHER,
                             String.valueOf(i),
                             MqttConfig.SCHEMA_ARTIFACT_ID,
-                            MqttConfig.TOPIC_BASE,
+                            topic,
                             false,
                             "Valid message failed serialization: " + e.getMessage(),
                             clientId,
@@ -222,16 +221,13 @@ public class MQTT5Publisher {
                 serdesHeaders.put("SCHEMA_ID_STRING", MqttConfig.SCHEMA_ARTIFACT_ID);
             }
             
-            MqttMessage message = new MqttMessage(outBytes);
-            message.setQos(MqttConfig.PUBLISH_QOS);
-            message.setRetained(false);
-            
             MqttProperties messageProperties = new MqttProperties();
             messageProperties.setMessageExpiryInterval(MqttConfig.MESSAGE_EXPIRY_INTERVAL);
             messageProperties.setPayloadFormat(true); // UTF-8 JSON
             messageProperties.setContentType("application/json");
-            messageProperties.setCorrelationData(("correlation-" + i).getBytes());
-            messageProperties.setResponseTopic(MqttConfig.RESPONSE_TOPIC);
+            String correlationId = "correlation-" + i;
+            messageProperties.setCorrelationData(correlationId.getBytes(java.nio.charset.StandardCharsets.UTF_8));
+            messageProperties.setResponseTopic(connection.responseTopic());
             
             // Add user properties
             messageProperties.getUserProperties().add(new org.eclipse.paho.mqttv5.common.packet.UserProperty("messageId", String.valueOf(i)));
@@ -247,13 +243,31 @@ public class MQTT5Publisher {
                 messageProperties.getUserProperties().add(new org.eclipse.paho.mqttv5.common.packet.UserProperty("SCHEMA_ID_STRING", MqttConfig.SCHEMA_ARTIFACT_ID));
             }
             
+            // Trusted-publisher mark over schema headers + serialized payload, before compression
+            TrustMarker marker = TrustMarker.get();
+            if (marker != null && schemaValidated) {
+                marker.stamp(serdesHeaders, outBytes, messageProperties.getUserProperties());
+            }
+            
+            // Compress after SERDES serialization (compression.enabled, above the threshold)
+            outBytes = PayloadCodec.get().encode(outBytes, messageProperties);
+            
+            MqttMessage message = new MqttMessage(outBytes);
+            message.setQos(TuningConfig.get().publishQos());
+            message.setRetained(false);
             message.setProperties(messageProperties);
             
             try {
-                client.publish(MqttConfig.TOPIC_BASE, message);
+                if (pendingAcks != null) {
+                    pendingAcks.register(correlationId);
+                }
+                pool.publish(connection, topic, message);
                 System.out.println("Published temperature reading: {sensorId=" + sensorId + ", temperature=" + temperature + "°C, timestamp=" + timestamp + "}");
             } catch (MqttException e) {
                 System.err.println("Failed to publish message: " + e.getMessage());
+                if (pendingAcks != null) {
+                    pendingAcks.fail(correlationId, e);
+                }
                 
                 // ELK: Log publish failure (network/broker issue)
                 ValidationLogger.logValidationEvent(
@@ -261,7 +275,7 @@ public class MQTT5Publisher {
                     ValidationLogger.ClientType.PUBLISHER,
                     String.valueOf(i),
                     MqttConfig.SCHEMA_ARTIFACT_ID,
-                    MqttConfig.TOPIC_BASE,
+                    topic,
                     false,
                     "MQTT publish failed: " + e.getMessage(),
                     clientId,
@@ -271,24 +285,96 @@ public class MQTT5Publisher {
                 );
             }
             
-            Thread.sleep(2000); // 2 second delay between messages
+            long intervalMs = TuningConfig.get().publishIntervalMs();
+            if (rateController == null && intervalMs > 0) {
+                Thread.sleep(intervalMs); // publish.interval.ms, re-read every message
+            }
         }
         
         System.out.println("Finished publishing all messages");
+        if (rateController != null) {
+            System.out.println("Adaptive rate: " + rateController.describe());
+        }
+        
+        if (pendingAcks != null) {
+            System.out.println("Waiting for validation acks (" + pendingAcks.outstanding() + " outstanding)...");
+            pendingAcks.awaitAll(TuningConfig.get().getLong("ack.timeout.ms", 10_000L));
+            pendingAcks.printStats();
+        }
     }
     
-    public void disconnect() throws MqttException, InterruptedException {
-        System.out.println("Disconnecting from MQTT5 broker...");
-        
-        if (client != null && client.isConnected()) {
-            try {
-                client.disconnect();
-                System.out.println("Successfully disconnected");
-            } catch (MqttException e) {
-                System.err.println("Disconnect failed: " + e.getMessage());
-            } finally {
-                client.close();
+    /**
+     * Replay a capture log recorded by MQTT5Subscriber --capture.
+     * speedFactor 1.0 keeps the original pacing, 2.0 plays twice as fast,
+     * and 0 (max) publishes as fast as the connections allow, or at the
+     * adaptive rate when publish.rate.mode=adaptive.
+     */
+    public void replay(java.nio.file.Path captureDir, double speedFactor) throws Exception {
+        System.out.println("Replaying capture from: " + captureDir.toAbsolutePath() +
+                         " (speed=" + (speedFactor <= 0 ? "max" : speedFactor + "x") + ")");
+        long[] origin = {-1L, 0L}; // first capture timestamp, replay start (nanos)
+        long[] replayed = {0L};
+        long count = CaptureLog.read(captureDir, record -> {
+            if (speedFactor > 0) {
+                if (origin[0] < 0) {
+                    origin[0] = record.receivedAtMillis;
+                    origin[1] = System.nanoTime();
+                }
+                long dueNanos = origin[1] + (long) ((record.receivedAtMillis - origin[0]) * 1_000_000L / speedFactor);
+                long waitNanos = dueNanos - System.nanoTime();
+                if (waitNanos > 0) {
+                    java.util.concurrent.TimeUnit.NANOSECONDS.sleep(waitNanos);
+                }
+            } else if (rateController != null) {
+                rateController.acquire();
             }
+            
+            MqttMessage message = new MqttMessage(record.payloadBytes());
+            message.setQos(record.qos);
+            message.setRetained(false);
+            MqttProperties messageProperties = new MqttProperties();
+            messageProperties.setMessageExpiryInterval(MqttConfig.MESSAGE_EXPIRY_INTERVAL);
+            messageProperties.setContentType("application/json");
+            // The topic carries the sensor shard, so it doubles as the affinity key
+            PublisherPool.Connection connection = pool.select(record.topic);
+            // New publisher identity per replay, or the subscriber's duplicate filter drops the replayed messages
+            replayed[0]++;
+            for (org.eclipse.paho.mqttv5.common.packet.UserProperty property : record.userProperties) {
+                if ("clientId".equals(property.getKey())) {
+                    property = new org.eclipse.paho.mqttv5.common.packet.UserProperty("clientId", connection.clientId());
+                } else if ("messageId".equals(property.getKey())) {
+                    property = new org.eclipse.paho.mqttv5.common.packet.UserProperty("messageId", String.valueOf(replayed[0]));
+                }
+                messageProperties.getUserProperties().add(property);
+            }
+            message.setProperties(messageProperties);
+            
+            pool.publish(connection, record.topic, message);
+        });
+        System.out.println("Finished replaying " + count + " messages");
+        if (rateController != null) {
+            System.out.println("Adaptive rate: " + rateController.describe());
         }
     }
+    
+    private static double parseSpeed(String value) {
+        if ("max".equalsIgnoreCase(value)) {
+            return 0;
+        }
+        if ("original".equalsIgnoreCase(value)) {
+            return 1.0;
+        }
+        double factor = Double.parseDouble(value.endsWith("x") ? value.substring(0, value.length() - 1) : value);
+        if (!(factor >= 0) || Double.isInfinite(factor)) {
+            throw new NumberFormatException("speed factor must be a non-negative number: " + value);
+        }
+        return factor;
+    }
+    
+    public void disconnect() throws MqttException, InterruptedException {
+        System.out.println("Disconnecting from MQTT5 broker...");
+        pool.printStats();
+        pool.disconnect();
+        System.out.println("Successfully disconnected");
+    }
 }
@@ -7,9 +7,7 @@ import org.eclipse.paho.mqttv5.client.persist.MemoryPersistence;
 import org.eclipse.paho.mqttv5.common.MqttException;
 import org.eclipse.paho.mqttv5.common.MqttMessage;
 import org.eclipse.paho.mqttv5.common.packet.MqttProperties;
-import org.eclipse.paho.mqttv5.common.packet.UserProperty;
 
-import com.fasterxml.jackson.databind.JsonNode;
 
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
@@ -23,6 +21,72 @@ public class MQTT5Subscriber {
     private volatile boolean fullyConnected = false;
     private final CountDownLatch connectionLatch = new CountDownLatch(1);
     
+    // Per-shard processing lanes (one topic -> one lane); lane count follows subscriber.workers
+    private final ShardLanes lanes = new ShardLanes("mqtt5-subscriber",
+        TuningConfig.get().subscriberWorkers(), Math.max(16, TuningConfig.get().receiveMaximum()));
+    // Subscribed filters, each with its own subscription identifier, schema and handler (routes.*)
+    private final SubscriptionRouter router;
+    // From CONNACK; without it the router falls back to topic matching
+    private volatile boolean subscriptionIdentifiersAvailable = true;
+    // Optional raw capture of received traffic (--capture <dir> or capture.dir)
+    private CaptureLog.Writer capture;
+    // Optional per-sensor window aggregation (aggregation.enabled)
+    private final SensorAggregator aggregator;
+    // Coalesced validation acks to each publisher's response topic (ack.enabled)
+    private final AckBatcher acks =
+        TuningConfig.get().getBoolean("ack.enabled", true) ? AckBatcher.fromTuning(CLIENT_ID, this::sendAcks) : null;
+    // Drops QoS 1 redeliveries by publisher clientId + messageId (dedup.enabled)
+    private final DuplicateFilter duplicates =
+        TuningConfig.get().getBoolean("dedup.enabled", true) ? DuplicateFilter.fromTuning() : null;
+    // Per-message stages and sinks (pipeline.stages, pipeline.sinks)
+    private final MessagePipeline pipeline;
+    
+    public MQTT5Subscriber() {
+        TuningConfig.get().addListener(() -> lanes.resize(TuningConfig.get().subscriberWorkers()));
+        if (TuningConfig.get().getBoolean("aggregation.enabled", false)) {
+            aggregator = SensorAggregator.fromTuning(this::emitAggregate);
+        } else {
+            aggregator = null;
+        }
+        java.util.Map<String, MessagePipeline.Stage> available = availableStages();
+        this.router = SubscriptionRouter.fromTuning(available);
+        this.pipeline = buildPipeline(available);
+    }
+    
+    /**
+     * Built-in stages and sinks by name, for pipeline.stages/pipeline.sinks and route handlers
+     */
+    private java.util.Map<String, MessagePipeline.Stage> availableStages() {
+        java.util.Map<String, MessagePipeline.Stage> available = new java.util.HashMap<>();
+        available.put("decode", new PipelineStages.Decode(CLIENT_ID));
+        if (duplicates != null) {
+            available.put("dedupe", new PipelineStages.Dedupe(duplicates));
+        }
+        available.put("validate", new PipelineStages.Validate(CLIENT_ID));
+        available.put("enrich", new PipelineStages.Enrich());
+        available.put("count", new PipelineStages.Count());
+        available.put("debug", new PipelineStages.Debug());
+        return available;
+    }
+    
+    /**
+     * decode -> dedupe -> validate -> enrich, then the selected sinks plus ack/aggregate/route handlers when enabled
+     */
+    private MessagePipeline buildPipeline(java.util.Map<String, MessagePipeline.Stage> available) {
+        String stages = duplicates != null ? "decode,dedupe,validate,enrich" : "decode,validate,enrich";
+        java.util.List<MessagePipeline.Stage> required = new java.util.ArrayList<>();
+        if (aggregator != null) {
+            required.add(new PipelineStages.Aggregate(aggregator));
+        }
+        if (acks != null) {
+            required.add(new PipelineStages.Ack(acks));
+        }
+        if (router.hasHandlers()) {
+            required.add(new PipelineStages.RouteHandler());
+        }
+        return MessagePipeline.fromTuning(available, stages, "count", required);
+    }
+    
     public static void main(String[] args) {
         // Print configuration first
         MqttConfig.printConfiguration();
@@ -34,8 +98,20 @@ public class MQTT5Subscriber {
             System.exit(1);
         }
         
+        // Apply tuning file changes (workers, sampling, validation) while running
+        TuningConfig.get().startWatching();
+        
         MQTT5Subscriber subscriber = new MQTT5Subscriber();
         try {
+            String captureDir = TuningConfig.get().getString("capture.dir", "");
+            for (int i = 0; i < args.length - 1; i++) {
+                if ("--capture".equals(args[i])) {
+                    captureDir = args[i + 1];
+                }
+            }
+            if (!captureDir.isEmpty()) {
+                subscriber.startCapture(java.nio.file.Paths.get(captureDir));
+            }
             subscriber.connect();
             subscriber.subscribe();
             subscriber.waitForMessages();
@@ -61,8 +137,8 @@ public class MQTT5Subscriber {
         options.setConnectionTimeout(MqttConfig.CONNECTION_TIMEOUT);
         // Apply additional MQTT v5 options aligned with config
         options.setSessionExpiryInterval(MqttConfig.SESSION_EXPIRY_INTERVAL);
-        options.setReceiveMaximum(MqttConfig.RECEIVE_MAXIMUM);
-        options.setMaximumPacketSize(MqttConfig.MAX_PACKET_SIZE);
+        options.setReceiveMaximum(TuningConfig.get().receiveMaximum());
+        options.setMaximumPacketSize(TuningConfig.get().maxPacketSize());
         
         // Set authentication credentials (if provided)
         if (MqttConfig.USERNAME != null && !MqttConfig.USERNAME.isEmpty()) {
@@ -85,7 +161,7 @@ public class MQTT5Subscriber {
             
             @Override
             public void messageArrived(String topic, MqttMessage message) throws Exception {
-                handleMessage(topic, message);
+                onMessage(topic, message);
             }
             
             @Override
@@ -115,6 +191,9 @@ public class MQTT5Subscriber {
             // Wait for the connect token to complete
             token.waitForCompletion(15000);
             System.out.println("Connection token completed");
+            if (token.getResponseProperties() != null) {
+                subscriptionIdentifiersAvailable = token.getResponseProperties().isSubscriptionIdentifiersAvailable();
+            }
             
             // Wait for the connectComplete callback to be triggered
             System.out.println("Waiting for connection to be fully established...");
@@ -141,8 +220,60 @@ public class MQTT5Subscriber {
         }
     }
     
+    /**
+     * Record every received message to a memory-mapped capture log for later replay
+     */
+    public void startCapture(java.nio.file.Path directory) throws java.io.IOException {
+        long segmentBytes = TuningConfig.get().getLong("capture.segment.bytes", CaptureLog.DEFAULT_SEGMENT_BYTES);
+        capture = new CaptureLog.Writer(directory, segmentBytes);
+        System.out.println("Capturing received messages to: " + directory.toAbsolutePath());
+    }
+    
+    private void captureMessage(String topic, MqttMessage message) {
+        MqttProperties properties = message.getProperties();
+        try {
+            // Called on the MQTT callback thread, so records keep arrival order
+            capture.append(System.currentTimeMillis(), message.getQos(), topic,
+                properties != null ? properties.getUserProperties() : null, message.getPayload());
+        } catch (java.io.IOException e) {
+            System.err.println("Capture failed: " + e.getMessage());
+        }
+    }
+    
+    private void sendAcks(String responseTopic, byte[] payload) throws MqttException {
+        if (client == null || !client.isConnected()) {
+            return;
+        }
+        MqttMessage message = new MqttMessage(payload);
+        message.setQos(TuningConfig.get().publishQos());
+        MqttProperties ackProperties = new MqttProperties();
+        ackProperties.setContentType("application/json");
+        message.setProperties(ackProperties);
+        client.publish(responseTopic, message);
+    }
+    
+    /**
+     * Deliver one chunk of window results to the log or to the aggregate topic
+     */
+    private void emitAggregate(String json) {
+        if (!"topic".equals(TuningConfig.get().getString("aggregation.sink", "log"))) {
+            System.out.println("[AGGREGATE_EVENT] " + json);
+            return;
+        }
+        if (client == null || !client.isConnected()) {
+            return;
+        }
+        try {
+            MqttMessage message = new MqttMessage(json.getBytes(java.nio.charset.StandardCharsets.UTF_8));
+            message.setQos(TuningConfig.get().publishQos());
+            client.publish(TuningConfig.get().getString("aggregation.topic", MqttConfig.AGGREGATE_TOPIC), message);
+        } catch (MqttException e) {
+            System.err.println("Failed to publish aggregates: " + e.getMessage());
+        }
+    }
+    
     public void subscribe() throws MqttException, InterruptedException {
-        System.out.println("Subscribing to topic: " + MqttConfig.TOPIC_BASE);
+        System.out.println("Subscribing to topic filters:" + router.describe());
         
         // Wait a moment to ensure connection is stable
         Thread.sleep(500);
@@ -156,9 +287,8 @@ public class MQTT5Subscriber {
         
         try {
             System.out.println("Sending subscription request...");
-            IMqttToken token = client.subscribe(MqttConfig.TOPIC_BASE, MqttConfig.SUBSCRIBE_QOS);
-            token.waitForCompletion(10000); // Wait up to 10 seconds
-            System.out.println("Successfully subscribed to: " + MqttConfig.TOPIC_BASE);
+            router.subscribe(client, subscriptionIdentifiersAvailable, 10000); // Wait up to 10 seconds per filter
+            System.out.println("Successfully subscribed to " + router.routes().size() + " topic filter(s)");
         } catch (MqttException e) {
             System.err.println("Failed to subscribe: " + e.getMessage());
             System.err.println("   Connection state: connected=" + client.isConnected() + 
@@ -167,124 +297,42 @@ public class MQTT5Subscriber {
         }
     }
     
-    private void handleMessage(String topic, MqttMessage message) {
-        System.out.println("\n=== Message Received ===");
-        System.out.println("Topic: " + topic);
-        System.out.println("QoS: " + message.getQos());
-        System.out.println("Retained: " + message.isRetained());
-        // Decode payload as UTF-8 explicitly to avoid platform default charset issues
-        try {
-            String payloadText = new String(message.getPayload(), java.nio.charset.StandardCharsets.UTF_8);
-            System.out.println("Payload: " + payloadText);
-        } catch (Exception decodeError) {
-            System.out.println("Payload (raw bytes): " + new String(message.getPayload()));
-        }
-        
-        // Extract metadata for logging
-        MqttProperties properties = message.getProperties();
-        java.util.List<UserProperty> userProps = (properties != null) ? properties.getUserProperties() : java.util.Collections.emptyList();
-        String messageId = extractUserProperty(userProps, "messageId");
-        String sensorId = extractSensorIdFromPayload(new String(message.getPayload(), java.nio.charset.StandardCharsets.UTF_8));
-        
-        // SERDES deserialization with validation
-        try {
-            // Extract only SERDES-specific headers, not all user properties
-            java.util.Map<String, Object> serdesHeaders = new java.util.HashMap<>();
-            for (UserProperty prop : userProps) {
-                // Only include headers that start with known SERDES prefixes
-                String key = prop.getKey();
-                if (key.equals("SCHEMA_ID_STRING") || key.startsWith("solace.schema.")) {
-                    serdesHeaders.put(key, prop.getValue());
-                }
-            }
-            
-            // Ensure SCHEMA_ID_STRING is present (for cases where only numeric ID was provided)
-            if (!serdesHeaders.containsKey("SCHEMA_ID_STRING")) {
-                serdesHeaders.put("SCHEMA_ID_STRING", MqttConfig.SCHEMA_ARTIFACT_ID);
-            }
-            
-            com.solace.serdes.jsonschema.JsonSchemaDeserializer<JsonNode> deserializer = SerdesSupport.getJsonDeserializer();
-            JsonNode deserialized = deserializer.deserialize(topic, message.getPayload(), serdesHeaders);
-            System.out.println("SERDES validation: PASSED");
-            System.out.println("Deserialized JSON: " + SerdesSupport.jsonToString(deserialized));
-            
-            // ELK: Log successful validation (sampled at 5%)
-            ValidationLogger.logSuccessfulValidation(
-                ValidationLogger.ClientType.SUBSCRIBER,
-                messageId != null ? messageId : "unknown",
-                MqttConfig.SCHEMA_ARTIFACT_ID,
-                topic,
-                CLIENT_ID,
-                sensorId
-            );
-            
-        } catch (Exception e) {
-            System.err.println("SERDES validation: FAILED");
-            System.err.println("  Reason: " + e.getMessage());
-            
-            // ELK: Log validation/deserialization failure
-            // CRITICAL - message passed publisher validation but failed subscriber validation
-            ValidationLogger.logSubscriberValidationFailure(
-                messageId != null ? messageId : "unknown",
-                MqttConfig.SCHEMA_ARTIFACT_ID,
-                topic,
-                e.getMessage(),
-                CLIENT_ID,
-                sensorId
-            );
+    /**
+     * Entry point for every received message (the MQTT callback thread, or SoakRunner without a broker)
+     */
+    void onMessage(String topic, MqttMessage message) throws InterruptedException {
+        if (capture != null) {
+            captureMessage(topic, message);
         }
-        
-        // Handle MQTT5 message properties (reuse properties variable from above)
-        if (properties != null) {
-            System.out.println("\n--- MQTT5 Properties ---");
-            
-            if (properties.getMessageExpiryInterval() != null) {
-                System.out.println("Message Expiry Interval: " + properties.getMessageExpiryInterval() + " seconds");
-            }
-            
-            // Check if getPayloadFormat returns Boolean instead of boolean
-            Boolean payloadFormat = properties.getPayloadFormat();
-            if (payloadFormat != null) {
-                System.out.println("Payload Format: " + (payloadFormat ? "UTF-8" : "Binary"));
-            }
-            
-            if (properties.getContentType() != null) {
-                System.out.println("Content Type: " + properties.getContentType());
-            }
-            
-            if (properties.getResponseTopic() != null) {
-                System.out.println("Response Topic: " + properties.getResponseTopic());
-            }
-            
-            if (properties.getCorrelationData() != null) {
-                System.out.println("Correlation Data: " + new String(properties.getCorrelationData(), java.nio.charset.StandardCharsets.UTF_8));
-            }
-            
-            if (properties.getTopicAlias() != null) {
-                System.out.println("Topic Alias: " + properties.getTopicAlias());
-            }
-            
-            // Handle user properties
-            if (!properties.getUserProperties().isEmpty()) {
-                System.out.println("\n--- User Properties ---");
-                for (UserProperty userProperty : properties.getUserProperties()) {
-                    System.out.println("  - " + userProperty.getKey() + ": " + userProperty.getValue());
-                }
-                // Explicitly surface SERDES schema header if present
-                properties.getUserProperties().stream()
-                    .filter(up -> "SCHEMA_ID_STRING".equals(up.getKey()))
-                    .findFirst()
-                    .ifPresent(up -> System.out.println("SERDES Schema ID: " + up.getValue()));
-            }
+        long arrivedNanos = System.nanoTime();
+        lanes.submit(topic, () -> dispatch(topic, message, arrivedNanos));
+    }
+    
+    /**
+     * Lane task: handle one message, recording a JFR dispatch event with its queue wait
+     */
+    private void dispatch(String topic, MqttMessage message, long arrivedNanos) {
+        long queueWait = System.nanoTime() - arrivedNanos;
+        PipelineEvents.Dispatch event = new PipelineEvents.Dispatch();
+        event.begin();
+        MessageContext context = new MessageContext(topic, message);
+        context.route = router.route(topic, context.properties);
+        pipeline.process(context);
+        event.end();
+        if (event.shouldCommit()) {
+            event.topic = topic;
+            event.payloadSize = message.getPayload().length;
+            event.queueWait = queueWait;
+            event.success = !context.isFailed();
+            event.commit();
         }
-        
-        System.out.println("========================\n");
     }
     
     public void waitForMessages() throws InterruptedException {
         System.out.println("Waiting for messages... Press Ctrl+C to exit");
         System.out.println("   Broker: " + MqttConfig.BROKER_URL);
-        System.out.println("   Topic: " + MqttConfig.TOPIC_BASE);
+        System.out.println("   Topic filters: " + router.routes().size());
+        System.out.println("   Processing lanes: " + lanes.size());
         
         // Add shutdown hook for graceful exit
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
@@ -308,10 +356,22 @@ public class MQTT5Subscriber {
         if (client != null && client.isConnected()) {
             try {
                 // Unsubscribe first
-                IMqttToken unsubToken = client.unsubscribe(MqttConfig.TOPIC_BASE);
-                unsubToken.waitForCompletion(5000);
-                System.out.println("Successfully unsubscribed from: " + MqttConfig.TOPIC_BASE);
-                
+                router.unsubscribe(client, 5000);
+                System.out.println("Successfully unsubscribed from " + router.routes().size() + " topic filter(s)");
+            } catch (MqttException e) {
+                System.err.println("Unsubscribe failed: " + e.getMessage());
+            }
+        }
+        
+        // Let queued messages finish and send their acks while still connected
+        lanes.shutdown(5000);
+        
+        if (acks != null) {
+            acks.close();
+        }
+        
+        if (client != null && client.isConnected()) {
+            try {
                 // Disconnect
                 IMqttToken disconnectToken = client.disconnect();
                 disconnectToken.waitForCompletion(5000);
@@ -326,32 +386,25 @@ public class MQTT5Subscriber {
                 }
             }
         }
-    }
-    
-    /**
-     * Extract a user property value by key
-     */
-    private String extractUserProperty(java.util.List<UserProperty> userProps, String key) {
-        return userProps.stream()
-            .filter(up -> key.equals(up.getKey()))
-            .map(UserProperty::getValue)
-            .findFirst()
-            .orElse(null);
-    }
-    
-    /**
-     * Extract sensor ID from JSON payload for correlation
-     */
-    private String extractSensorIdFromPayload(String payloadJson) {
-        try {
-            com.fasterxml.jackson.databind.ObjectMapper mapper = new com.fasterxml.jackson.databind.ObjectMapper();
-            com.fasterxml.jackson.databind.JsonNode node = mapper.readTree(payloadJson);
-            if (node.has("sensorId")) {
-                return node.get("sensorId").asText();
+        
+        if (aggregator != null) {
+            aggregator.close();
+        }
+        
+        pipeline.close();
+        router.printStats();
+        
+        if (TrustMarker.get() != null) {
+            TrustMarker.get().printStats();
+        }
+        
+        if (capture != null) {
+            try {
+                capture.close();
+                System.out.println("Capture closed: " + capture.recordCount() + " messages recorded");
+            } catch (java.io.IOException e) {
+                System.err.println("Failed to close capture: " + e.getMessage());
             }
-        } catch (Exception e) {
-            // Ignore parsing errors
         }
-        return null;
     }
 }
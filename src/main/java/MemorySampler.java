@@ -0,0 +1,155 @@
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Periodic resource samples for soak runs, and the leak verdict over them.
+ *
+ * Each sample records retained heap (heap used right after a full GC, or
+ * the last collection's usage when full GCs are disabled), cumulative GC
+ * count and time, direct and mapped buffer memory and the live thread
+ * count, together with the messages and distinct sensors seen so far.
+ * After a warm-up share of the samples, least-squares slopes of retained
+ * heap and direct memory against messages, and of retained heap against
+ * sensors, must stay under the configured limits.
+ */
+public final class MemorySampler {
+
+    /**
+     * One resource sample
+     */
+    public static final class Sample {
+        public final long elapsedMs;
+        public final long messages;
+        public final long sensors;
+        public final long retainedHeapBytes;
+        public final long gcCount;
+        public final long gcTimeMs;
+        public final long directBytes;
+        public final long mappedBytes;
+        public final int threads;
+
+        Sample(long elapsedMs, long messages, long sensors, long retainedHeapBytes, long gcCount, long gcTimeMs,
+               long directBytes, long mappedBytes, int threads) {
+            this.elapsedMs = elapsedMs;
+            this.messages = messages;
+            this.sensors = sensors;
+            this.retainedHeapBytes = retainedHeapBytes;
+            this.gcCount = gcCount;
+            this.gcTimeMs = gcTimeMs;
+            this.directBytes = directBytes;
+            this.mappedBytes = mappedBytes;
+            this.threads = threads;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("t=%ds messages=%d sensors=%d retainedHeap=%.1fMB gc=%d/%dms direct=%.1fMB mapped=%.1fMB threads=%d",
+                elapsedMs / 1000, messages, sensors, retainedHeapBytes / 1048576.0, gcCount, gcTimeMs,
+                directBytes / 1048576.0, mappedBytes / 1048576.0, threads);
+        }
+    }
+
+    private final boolean fullGc;
+    private final long startMillis = System.currentTimeMillis();
+    private final List<Sample> samples = new ArrayList<>();
+
+    public MemorySampler(boolean fullGc) {
+        this.fullGc = fullGc;
+    }
+
+    public synchronized Sample sample(long messages, long sensors) {
+        if (fullGc) {
+            System.gc();
+        }
+        long gcCount = 0;
+        long gcTime = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcCount += Math.max(0, gc.getCollectionCount());
+            gcTime += Math.max(0, gc.getCollectionTime());
+        }
+        long direct = 0;
+        long mapped = 0;
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if ("direct".equals(pool.getName())) {
+                direct = pool.getMemoryUsed();
+            } else if ("mapped".equals(pool.getName())) {
+                mapped = pool.getMemoryUsed();
+            }
+        }
+        Sample sample = new Sample(System.currentTimeMillis() - startMillis, messages, sensors, retainedHeap(),
+            gcCount, gcTime, direct, mapped, ManagementFactory.getThreadMXBean().getThreadCount());
+        samples.add(sample);
+        return sample;
+    }
+
+    /**
+     * Check the post-warm-up samples against the limits; returns the failures (empty when steady)
+     */
+    public synchronized List<String> verdict(double warmupFraction, double maxBytesPerMessage,
+                                             double maxBytesPerSensor, int maxThreadGrowth) {
+        List<String> failures = new ArrayList<>();
+        List<Sample> steady = samples.subList(
+            Math.min(samples.size(), (int) Math.ceil(samples.size() * warmupFraction)), samples.size());
+        if (steady.size() < 5) {
+            System.out.println("Soak verdict inconclusive: only " + steady.size() + " samples after warm-up");
+            return failures;
+        }
+
+        double heapPerMessage = slope(steady, s -> s.messages, s -> s.retainedHeapBytes);
+        double directPerMessage = slope(steady, s -> s.messages, s -> s.directBytes + s.mappedBytes);
+        double heapPerSensor = slope(steady, s -> s.sensors, s -> s.retainedHeapBytes);
+        int minThreads = steady.stream().mapToInt(s -> s.threads).min().orElse(0);
+        int lastThreads = steady.get(steady.size() - 1).threads;
+
+        System.out.println(String.format(
+            "Soak trend over %d samples: heap %.3f B/message, direct+mapped %.3f B/message, heap %.1f B/sensor, threads %d..%d",
+            steady.size(), heapPerMessage, directPerMessage, heapPerSensor, minThreads, lastThreads));
+        if (heapPerMessage > maxBytesPerMessage) {
+            failures.add(String.format("retained heap grows %.3f B/message (limit %.3f)", heapPerMessage, maxBytesPerMessage));
+        }
+        if (directPerMessage > maxBytesPerMessage) {
+            failures.add(String.format("direct/mapped memory grows %.3f B/message (limit %.3f)", directPerMessage, maxBytesPerMessage));
+        }
+        if (!Double.isNaN(heapPerSensor) && heapPerSensor > maxBytesPerSensor) {
+            failures.add(String.format("retained heap grows %.1f B/sensor (limit %.1f)", heapPerSensor, maxBytesPerSensor));
+        }
+        if (lastThreads - minThreads > maxThreadGrowth) {
+            failures.add("thread count grew from " + minThreads + " to " + lastThreads);
+        }
+        return failures;
+    }
+
+    private long retainedHeap() {
+        if (fullGc) {
+            return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        }
+        // Usage of each heap pool as left by its last collection
+        long used = 0;
+        for (java.lang.management.MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == java.lang.management.MemoryType.HEAP && pool.getCollectionUsage() != null) {
+                used += pool.getCollectionUsage().getUsed();
+            }
+        }
+        return used;
+    }
+
+    /**
+     * Least-squares slope of y over x; NaN when x does not vary
+     */
+    private static double slope(List<Sample> points, java.util.function.ToLongFunction<Sample> x,
+                                java.util.function.ToLongFunction<Sample> y) {
+        double meanX = points.stream().mapToLong(x).average().orElse(0);
+        double meanY = points.stream().mapToLong(y).average().orElse(0);
+        double covariance = 0;
+        double variance = 0;
+        for (Sample p : points) {
+            double dx = x.applyAsLong(p) - meanX;
+            covariance += dx * (y.applyAsLong(p) - meanY);
+            variance += dx * dx;
+        }
+        return variance == 0 ? Double.NaN : covariance / variance;
+    }
+}
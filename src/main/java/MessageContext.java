@@ -0,0 +1,89 @@
+import com.fasterxml.jackson.databind.JsonNode;
+import org.eclipse.paho.mqttv5.common.MqttMessage;
+import org.eclipse.paho.mqttv5.common.packet.MqttProperties;
+import org.eclipse.paho.mqttv5.common.packet.UserProperty;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * State of one received message as it moves through the {@link MessagePipeline}.
+ * Stages fill in the decoded payload, validated value and sensor fields, or
+ * mark the message dropped or failed; sinks read the final state.
+ */
+public final class MessageContext {
+
+    public final String topic;
+    public final MqttMessage message;
+    public final MqttProperties properties;
+    public final List<UserProperty> userProperties;
+    public final String messageId;
+
+    // Subscribed filter the message arrived through (null when none matched)
+    public SubscriptionRouter.Route route;
+
+    // Filled in by stages
+    public byte[] payload;
+    public JsonNode value;
+    public boolean validated;      // fully schema-validated here (not only trusted)
+    public String sensorId;
+    public Double temperature;
+
+    // Outcome
+    private boolean dropped;
+    private String errorCode;
+    private Throwable error;
+
+    public MessageContext(String topic, MqttMessage message) {
+        this.topic = topic;
+        this.message = message;
+        this.properties = message.getProperties();
+        this.userProperties = properties != null ? properties.getUserProperties() : Collections.emptyList();
+        this.messageId = userProperty("messageId");
+        this.payload = message.getPayload();
+    }
+
+    public String userProperty(String key) {
+        for (UserProperty up : userProperties) {
+            if (key.equals(up.getKey())) {
+                return up.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Schema artifact expected on this message's route
+     */
+    public String schemaArtifactId() {
+        return route != null ? route.schemaArtifactId : MqttConfig.SCHEMA_ARTIFACT_ID;
+    }
+
+    /**
+     * Stop processing without an error (e.g. a redelivered duplicate)
+     */
+    public void drop() {
+        dropped = true;
+    }
+
+    public void fail(Throwable cause) {
+        this.error = cause;
+        this.errorCode = ErrorClassifier.get().classify(cause).code;
+    }
+
+    public boolean isDropped() {
+        return dropped;
+    }
+
+    public boolean isFailed() {
+        return errorCode != null;
+    }
+
+    public String errorCode() {
+        return errorCode;
+    }
+
+    public Throwable error() {
+        return error;
+    }
+}
@@ -0,0 +1,97 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Configurable per-message processing chain for the subscriber:
+ * decode -> dedupe -> validate -> enrich, then every sink.
+ *
+ * Stages run in order until one returns false (dropped or failed message)
+ * or throws, in which case the message is marked failed. Sinks always run
+ * and see the final {@link MessageContext}, so they can count, print or
+ * acknowledge failures as well as successes.
+ *
+ * Stage and sink names come from pipeline.stages and pipeline.sinks
+ * (applied at startup); see {@link PipelineStages} for the built-ins.
+ */
+public final class MessagePipeline {
+
+    /**
+     * One processing step (or sink); return false to stop the remaining stages
+     */
+    public interface Stage {
+        boolean process(MessageContext message) throws Exception;
+
+        /**
+         * Called once on shutdown, after the last message
+         */
+        default void close() {}
+    }
+
+    private final Stage[] stages;
+    private final Stage[] sinks;
+
+    public MessagePipeline(List<Stage> stages, List<Stage> sinks) {
+        this.stages = stages.toArray(new Stage[0]);
+        this.sinks = sinks.toArray(new Stage[0]);
+    }
+
+    /**
+     * Build from comma-separated tuning lists; unknown names are reported and skipped.
+     * Required sinks (acks, aggregation) always run after the selected ones.
+     */
+    public static MessagePipeline fromTuning(Map<String, Stage> available, String defaultStages, String defaultSinks,
+                                             List<Stage> requiredSinks) {
+        TuningConfig tuning = TuningConfig.get();
+        List<Stage> sinks = select(available, tuning.getString("pipeline.sinks", defaultSinks), "sink");
+        sinks.addAll(requiredSinks);
+        return new MessagePipeline(select(available, tuning.getString("pipeline.stages", defaultStages), "stage"), sinks);
+    }
+
+    public void process(MessageContext message) {
+        for (Stage stage : stages) {
+            try {
+                if (!stage.process(message)) {
+                    break;
+                }
+            } catch (Exception e) {
+                message.fail(e);
+                break;
+            }
+        }
+        for (Stage sink : sinks) {
+            try {
+                sink.process(message);
+            } catch (Exception e) {
+                System.err.println("Pipeline sink failed: " + e.getMessage());
+            }
+        }
+    }
+
+    public void close() {
+        for (Stage stage : stages) {
+            stage.close();
+        }
+        for (Stage sink : sinks) {
+            sink.close();
+        }
+    }
+
+    private static List<Stage> select(Map<String, Stage> available, String names, String kind) {
+        List<Stage> selected = new ArrayList<>();
+        for (String name : names.split(",")) {
+            String key = name.trim();
+            if (key.isEmpty()) {
+                continue;
+            }
+            Stage stage = available.get(key);
+            if (stage == null) {
+                System.err.println("Ignoring unknown pipeline " + kind + ": " + key);
+            } else {
+                selected.add(stage);
+            }
+        }
+        System.out.println("Pipeline " + kind + "s: " + names);
+        return selected;
+    }
+}
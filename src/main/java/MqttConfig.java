@@ -1,6 +1,8 @@
 /**
  * Configuration utility class for MQTT5 connection settings and credentials.
  * Modify the constants in this class to match your broker configuration.
+ * Performance-related constants are defaults only; they can be overridden
+ * at runtime through TuningConfig (mqtt5-tuning.properties / MQTT5_* env).
  */
 public class MqttConfig {
     
@@ -17,6 +19,7 @@ public class MqttConfig {
     // Topic Configuration
     public static final String TOPIC_BASE = "test/mqtt5/messages";
     public static final String RESPONSE_TOPIC = "test/mqtt5/responses";
+    public static final String AGGREGATE_TOPIC = "test/mqtt5/aggregates"; // outside TOPIC_BASE/#
     
     // Client Configuration
     public static final int CONNECTION_TIMEOUT = 10;          // seconds
@@ -24,6 +27,7 @@ public class MqttConfig {
     public static final long SESSION_EXPIRY_INTERVAL = 3600L; // 1 hour in seconds
     public static final int RECEIVE_MAXIMUM = 100;            // max in-flight messages
     public static final long MAX_PACKET_SIZE = 1024 * 1024L;  // 1MB
+    public static final int PUBLISHER_CONNECTIONS = 1;        // pooled publisher connections
     
     // Message Configuration
     public static final int DEFAULT_QOS = 1;                  // 0, 1, or 2
@@ -31,6 +35,11 @@ public class MqttConfig {
     public static final int SUBSCRIBE_QOS = 0;                // Recommended for this service
     public static final int PUBLISH_QOS = 0;                  // Keep consistent with subscriber
     public static final long MESSAGE_EXPIRY_INTERVAL = 300L;  // 5 minutes in seconds
+    public static final long PUBLISH_INTERVAL_MS = 2000L;     // delay between published messages
+    
+    // Processing Configuration
+    public static final int SUBSCRIBER_WORKERS = 1;           // message handler threads
+    public static final double SUCCESS_LOG_SAMPLE_RATE = 0.05; // fraction of successes logged
     
     // Schema Registry Configuration (fill in credentials)
     public static final String SCHEMA_REGISTRY_URL = "https://apis.3.132.149.135.nip.io/apis/registry/v3";
@@ -93,6 +102,7 @@ public class MqttConfig {
         System.out.println("Keep Alive: " + KEEP_ALIVE_INTERVAL + "s");
         System.out.println("Session Expiry: " + SESSION_EXPIRY_INTERVAL + "s");
         System.out.println("Default QoS: " + DEFAULT_QOS);
+        System.out.println("Tuning: " + TuningConfig.get().describe());
         System.out.println("========================\n");
         
         if (!isConfigurationValid()) {
@@ -0,0 +1,240 @@
+import org.eclipse.paho.mqttv5.common.packet.MqttProperties;
+import org.eclipse.paho.mqttv5.common.packet.UserProperty;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Adler32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Optional payload compression applied after SERDES serialization and
+ * removed before deserialization, so schema validation always sees the
+ * original JSON bytes.
+ *
+ * Payloads at or above compression.threshold.bytes are deflated (zlib
+ * format) and marked with the "content-encoding" user property:
+ * "deflate", or "deflate;dict=<adler32>" when a preset dictionary trained
+ * by {@link DictionaryTrainer} is configured. A dictionary lets even small,
+ * repetitive sensor readings compress. The first file in
+ * compression.dictionary.files is used for compressing; every listed file
+ * can decompress, so dictionaries can be rotated without a flag day.
+ * Payloads that would not shrink are sent as-is.
+ */
+public final class PayloadCodec {
+
+    public static final String CONTENT_ENCODING = "content-encoding";
+    private static final String DEFLATE = "deflate";
+    private static final String DICT_PARAM = ";dict=";
+    private static final int INITIAL_BUFFER_BYTES = 8192;
+    // Larger buffers serve a single oversized message and are not kept per thread
+    private static final int RETAINED_BUFFER_BYTES = 64 * 1024;
+
+    private static volatile PayloadCodec instance;
+
+    private final int level;
+    private final byte[] dictionary;
+    private final String dictionaryId;
+    private final Map<String, byte[]> decodeDictionaries;
+    private final int maxInflatedBytes;
+
+    // Deflater/Inflater hold native memory; keep one per thread and reset between uses
+    private final ThreadLocal<Deflater> deflaters;
+    private final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(Inflater::new);
+    private final ThreadLocal<byte[]> buffers = ThreadLocal.withInitial(() -> new byte[INITIAL_BUFFER_BYTES]);
+
+    PayloadCodec(int level, List<byte[]> dictionaries, int maxInflatedBytes) {
+        this.level = level;
+        this.maxInflatedBytes = Math.max(0, maxInflatedBytes);
+        this.decodeDictionaries = new LinkedHashMap<>();
+        for (byte[] dict : dictionaries) {
+            decodeDictionaries.put(idOf(dict), dict);
+        }
+        this.dictionary = dictionaries.isEmpty() ? null : dictionaries.get(0);
+        this.dictionaryId = dictionary == null ? null : idOf(dictionary);
+        this.deflaters = ThreadLocal.withInitial(() -> new Deflater(this.level));
+    }
+
+    /**
+     * Codec configured from tuning; dictionaries and level are read once,
+     * compression.enabled and the threshold are re-read per message
+     */
+    public static PayloadCodec get() {
+        PayloadCodec codec = instance;
+        if (codec == null) {
+            synchronized (PayloadCodec.class) {
+                codec = instance;
+                if (codec == null) {
+                    codec = fromTuning();
+                    instance = codec;
+                }
+            }
+        }
+        return codec;
+    }
+
+    private static PayloadCodec fromTuning() {
+        TuningConfig tuning = TuningConfig.get();
+        List<byte[]> dictionaries = new java.util.ArrayList<>();
+        for (String file : tuning.getString("compression.dictionary.files", "").split(",")) {
+            if (file.trim().isEmpty()) {
+                continue;
+            }
+            try {
+                byte[] dict = Files.readAllBytes(Paths.get(file.trim()));
+                dictionaries.add(dict);
+                System.out.println("Loaded compression dictionary " + file.trim() + " (" + dict.length +
+                                 " bytes, id " + idOf(dict) + ")");
+            } catch (IOException e) {
+                System.err.println("Failed to load compression dictionary " + file.trim() + ": " + e.getMessage());
+            }
+        }
+        return new PayloadCodec(
+            tuning.getInt("compression.level", Deflater.DEFAULT_COMPRESSION),
+            dictionaries,
+            tuning.getInt("compression.max.inflated.bytes", (int) (16 * MqttConfig.MAX_PACKET_SIZE)));
+    }
+
+    /**
+     * Compress the payload if enabled and large enough, marking the message
+     * properties; otherwise return it unchanged
+     */
+    public byte[] encode(byte[] payload, MqttProperties properties) {
+        TuningConfig tuning = TuningConfig.get();
+        if (!tuning.getBoolean("compression.enabled", false)
+                || payload.length < tuning.getInt("compression.threshold.bytes", 1024)) {
+            return payload;
+        }
+        byte[] compressed = deflate(payload);
+        if (compressed.length >= payload.length) {
+            return payload;
+        }
+        properties.getUserProperties().add(new UserProperty(CONTENT_ENCODING,
+            dictionaryId == null ? DEFLATE : DEFLATE + DICT_PARAM + dictionaryId));
+        properties.setPayloadFormat(false); // no longer UTF-8 text on the wire
+        return compressed;
+    }
+
+    /**
+     * Return the original payload, inflating it if the message is marked as compressed
+     */
+    public byte[] decode(byte[] payload, MqttProperties properties) throws IOException {
+        return decode(payload, properties == null ? null : properties.getUserProperties());
+    }
+
+    /**
+     * Same as {@link #decode(byte[], MqttProperties)} for user properties read from a capture
+     */
+    public byte[] decode(byte[] payload, List<UserProperty> userProperties) throws IOException {
+        String encoding = null;
+        if (userProperties != null) {
+            for (UserProperty up : userProperties) {
+                if (CONTENT_ENCODING.equals(up.getKey())) {
+                    encoding = up.getValue();
+                    break;
+                }
+            }
+        }
+        if (encoding == null) {
+            return payload;
+        }
+        if (!encoding.startsWith(DEFLATE)) {
+            throw new IOException("Unsupported compressed payload encoding: " + encoding);
+        }
+        byte[] dict = null;
+        int param = encoding.indexOf(DICT_PARAM);
+        if (param >= 0) {
+            String id = encoding.substring(param + DICT_PARAM.length());
+            dict = decodeDictionaries.get(id);
+            if (dict == null) {
+                throw new IOException("Unknown compression dictionary " + id + " for compressed payload");
+            }
+        }
+        return inflate(payload, dict);
+    }
+
+    public String describe() {
+        return "level=" + level + ", dictionary=" + (dictionaryId == null ? "none" : dictionaryId) +
+               ", decodeDictionaries=" + decodeDictionaries.keySet();
+    }
+
+    byte[] deflate(byte[] payload) {
+        Deflater deflater = deflaters.get();
+        deflater.reset();
+        if (dictionary != null) {
+            deflater.setDictionary(dictionary);
+        }
+        deflater.setInput(payload);
+        deflater.finish();
+        byte[] buffer = buffers.get();
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == buffer.length) {
+                buffer = grow(buffer, Integer.MAX_VALUE);
+            }
+            length += deflater.deflate(buffer, length, buffer.length - length);
+        }
+        return Arrays.copyOf(buffer, length);
+    }
+
+    private byte[] inflate(byte[] payload, byte[] dict) throws IOException {
+        Inflater inflater = inflaters.get();
+        inflater.reset();
+        inflater.setInput(payload);
+        byte[] buffer = buffers.get();
+        // One byte past the limit is enough to tell that the payload exceeds it
+        int limit = (int) Math.min((long) maxInflatedBytes + 1, Integer.MAX_VALUE);
+        int length = 0;
+        try {
+            while (!inflater.finished()) {
+                if (length == buffer.length) {
+                    buffer = grow(buffer, limit);
+                }
+                int n = inflater.inflate(buffer, length, Math.min(buffer.length, limit) - length);
+                length += n;
+                if (length > maxInflatedBytes) {
+                    throw new IOException("Compressed payload inflates beyond " + maxInflatedBytes + " bytes");
+                }
+                if (n == 0 && !inflater.finished()) {
+                    if (inflater.needsDictionary()) {
+                        if (dict == null) {
+                            throw new IOException("Compressed payload needs a dictionary but none was signalled");
+                        }
+                        inflater.setDictionary(dict);
+                    } else if (inflater.needsInput()) {
+                        throw new IOException("Truncated compressed payload");
+                    }
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt compressed payload: " + e.getMessage(), e);
+        }
+        return Arrays.copyOf(buffer, length);
+    }
+
+    /**
+     * Double a full buffer up to max bytes, keeping it for this thread only while it is small
+     */
+    private byte[] grow(byte[] buffer, int max) {
+        byte[] grown = Arrays.copyOf(buffer, (int) Math.min((long) buffer.length * 2, max));
+        if (grown.length <= RETAINED_BUFFER_BYTES) {
+            buffers.set(grown);
+        }
+        return grown;
+    }
+
+    /**
+     * Dictionary ID: Adler-32 of its bytes, as also stored in the zlib header
+     */
+    static String idOf(byte[] dictionary) {
+        Adler32 adler = new Adler32();
+        adler.update(dictionary);
+        return Long.toHexString(adler.getValue());
+    }
+}
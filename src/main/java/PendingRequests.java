@@ -0,0 +1,137 @@
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tracks published messages awaiting a validation acknowledgement from the
+ * subscriber, keyed by MQTT5 correlation data.
+ *
+ * Each registration returns a future that completes when the matching ack
+ * arrives on the publisher's response topic, or exceptionally after the
+ * timeout. Round-trip latency (publish to ack) is recorded per ack.
+ */
+public final class PendingRequests {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    /**
+     * Validation outcome reported by the subscriber
+     */
+    public static final class Ack {
+        public final boolean ok;
+        public final String errorCode;
+        public final String responder;
+        public final long roundTripNanos;
+
+        Ack(boolean ok, String errorCode, String responder, long roundTripNanos) {
+            this.ok = ok;
+            this.errorCode = errorCode;
+            this.responder = responder;
+            this.roundTripNanos = roundTripNanos;
+        }
+    }
+
+    private static final class Pending {
+        final CompletableFuture<Ack> future = new CompletableFuture<>();
+        final long sentNanos = System.nanoTime();
+    }
+
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+    private final long timeoutMs;
+    private final LatencyStats roundTrip = new LatencyStats();
+    private final LongAdder validated = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private final LongAdder unmatched = new LongAdder();
+
+    public PendingRequests(long timeoutMs) {
+        this.timeoutMs = Math.max(1L, timeoutMs);
+    }
+
+    /**
+     * Start waiting for an ack; call just before publishing
+     */
+    public CompletableFuture<Ack> register(String correlationId) {
+        Pending entry = new Pending();
+        pending.put(correlationId, entry);
+        entry.future.orTimeout(timeoutMs, TimeUnit.MILLISECONDS).whenComplete((ack, error) -> {
+            pending.remove(correlationId, entry);
+            if (error instanceof TimeoutException) {
+                timedOut.increment();
+            }
+        });
+        return entry.future;
+    }
+
+    /**
+     * Abandon a request whose publish failed
+     */
+    public void fail(String correlationId, Throwable error) {
+        Pending entry = pending.remove(correlationId);
+        if (entry != null) {
+            entry.future.completeExceptionally(error);
+        }
+    }
+
+    /**
+     * Handle one ack batch published by the subscriber:
+     * {"responder":"...","acks":[{"c":"correlation-1","ok":true},{"c":"...","ok":false,"code":"..."}]}
+     */
+    public void onResponse(byte[] payload) {
+        long now = System.nanoTime();
+        JsonNode batch;
+        try {
+            batch = JSON.readTree(payload);
+        } catch (Exception e) {
+            System.err.println("Ignoring malformed ack batch: " + e.getMessage());
+            return;
+        }
+        String responder = batch.path("responder").asText(null);
+        for (JsonNode ack : batch.path("acks")) {
+            Pending entry = pending.remove(ack.path("c").asText());
+            if (entry == null) {
+                unmatched.increment(); // late (already timed out) or for another publisher
+                continue;
+            }
+            boolean ok = ack.path("ok").asBoolean();
+            long rtt = now - entry.sentNanos;
+            roundTrip.record(rtt);
+            (ok ? validated : rejected).increment();
+            entry.future.complete(new Ack(ok, ack.path("code").asText(null), responder, rtt));
+        }
+    }
+
+    public int outstanding() {
+        return pending.size();
+    }
+
+    public LatencyStats roundTrip() {
+        return roundTrip;
+    }
+
+    /**
+     * Wait until every registered request is acked or timed out
+     */
+    public void awaitAll(long maxWaitMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + maxWaitMs;
+        while (!pending.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+    }
+
+    public void printStats() {
+        System.out.println("=== Delivery Confirmation ===");
+        System.out.println("  Validated downstream: " + validated.sum());
+        System.out.println("  Rejected downstream: " + rejected.sum());
+        System.out.println("  Timed out: " + timedOut.sum() + " (outstanding: " + pending.size() + ")");
+        System.out.println("  Unmatched acks: " + unmatched.sum());
+        System.out.println("  Round trip: " + roundTrip.summary());
+        System.out.println("=============================");
+    }
+}
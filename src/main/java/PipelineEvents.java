@@ -0,0 +1,92 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Custom JFR events for each stage of the publish and receive paths.
+ *
+ * Callers follow one pattern so a disabled event costs next to nothing
+ * (the JIT removes the allocation and begin/end are no-ops):
+ *
+ *   PipelineEvents.Serialize event = new PipelineEvents.Serialize();
+ *   event.begin();
+ *   ... stage ...
+ *   event.end();
+ *   if (event.shouldCommit()) { set fields; event.commit(); }
+ *
+ * Enable with -XX:StartFlightRecording=settings=mqtt5-pipeline.jfc,filename=...
+ * (src/main/resources/mqtt5-pipeline.jfc) and summarize the recording with
+ * {@link JfrStageReport}.
+ */
+public final class PipelineEvents {
+
+    private PipelineEvents() {}
+
+    /**
+     * Fields common to every stage
+     */
+    @Category({"MQTT5", "Pipeline"})
+    @StackTrace(false)
+    abstract static class StageEvent extends Event {
+        @Label("Topic")
+        String topic;
+
+        @Label("Schema ID")
+        String schemaId;
+
+        @Label("Payload Size")
+        @DataAmount
+        long payloadSize;
+
+        @Label("Success")
+        boolean success;
+    }
+
+    @Name("mqtt5.Serialize")
+    @Label("SERDES Serialize")
+    @Description("JsonSchemaSerializer.serialize, including schema validation")
+    public static final class Serialize extends StageEvent {}
+
+    @Name("mqtt5.Deserialize")
+    @Label("SERDES Deserialize")
+    @Description("JsonSchemaDeserializer.deserialize, including schema validation")
+    public static final class Deserialize extends StageEvent {}
+
+    @Name("mqtt5.SerdesConfigure")
+    @Label("SERDES Configure")
+    @Description("Building and configuring a serializer or deserializer against the schema registry")
+    public static final class SerdesConfigure extends StageEvent {}
+
+    @Name("mqtt5.Publish")
+    @Label("Client Publish")
+    @Description("MqttAsyncClient.publish call (hand-off to the client, not delivery)")
+    public static final class Publish extends StageEvent {}
+
+    @Name("mqtt5.PublishComplete")
+    @Label("Publish Token Completion")
+    @Description("Time from publish until the delivery token completed")
+    public static final class PublishComplete extends StageEvent {
+        @Label("Latency")
+        @Timespan(Timespan.NANOSECONDS)
+        long latency;
+    }
+
+    @Name("mqtt5.Dispatch")
+    @Label("Message Dispatch")
+    @Description("Subscriber handling of one message on its shard lane")
+    public static final class Dispatch extends StageEvent {
+        @Label("Queue Wait")
+        @Timespan(Timespan.NANOSECONDS)
+        long queueWait;
+    }
+
+    @Name("mqtt5.LogWrite")
+    @Label("Validation Log Write")
+    @Description("ValidationLogger event serialization and output")
+    public static final class LogWrite extends StageEvent {}
+}
@@ -0,0 +1,398 @@
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.eclipse.paho.mqttv5.common.packet.MqttProperties;
+import org.eclipse.paho.mqttv5.common.packet.UserProperty;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Built-in {@link MessagePipeline} stages and sinks.
+ *
+ * Stages: decode (undo payload compression), dedupe (drop QoS 1
+ * redeliveries), validate (SERDES deserialization, or trusted-mark check),
+ * enrich (sensor fields from the validated value).
+ * Sinks: count (quiet counters with a periodic summary line), debug
+ * (full per-message dump, rate limited), plus ack, aggregate and route
+ * handler, which the subscriber adds when acks, aggregation or route
+ * handlers are configured.
+ */
+public final class PipelineStages {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private PipelineStages() {}
+
+    /**
+     * Inflate compressed payloads so later stages see the serialized JSON
+     */
+    public static final class Decode implements MessagePipeline.Stage {
+        private final String clientId;
+
+        public Decode(String clientId) {
+            this.clientId = clientId;
+        }
+
+        @Override
+        public boolean process(MessageContext message) {
+            try {
+                message.payload = PayloadCodec.get().decode(message.payload, message.userProperties);
+                return true;
+            } catch (java.io.IOException e) {
+                message.fail(e);
+                ValidationLogger.logSubscriberValidationFailure(
+                    message.messageId != null ? message.messageId : "unknown",
+                    message.schemaArtifactId(), message.topic, e, clientId, null);
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Drop redeliveries by the publisher's clientId + messageId (or correlation data)
+     */
+    public static final class Dedupe implements MessagePipeline.Stage {
+        private final DuplicateFilter duplicates;
+
+        public Dedupe(DuplicateFilter duplicates) {
+            this.duplicates = duplicates;
+        }
+
+        @Override
+        public boolean process(MessageContext message) {
+            String messageId = message.messageId;
+            if (messageId == null && message.properties != null && message.properties.getCorrelationData() != null) {
+                messageId = new String(message.properties.getCorrelationData(), StandardCharsets.UTF_8);
+            }
+            if (messageId == null) {
+                return true; // nothing to identify the message by
+            }
+            if (duplicates.isDuplicate(message.userProperty("clientId"), messageId)) {
+                message.drop();
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public void close() {
+            System.out.println("Duplicate suppression: " + duplicates.droppedCount() + " of " +
+                duplicates.checkedCount() + " messages dropped");
+        }
+    }
+
+    /**
+     * Schema validation through the SERDES deserializer; messages with a verified
+     * trusted-publisher mark are only validated for a sample
+     */
+    public static final class Validate implements MessagePipeline.Stage {
+        private final String clientId;
+
+        public Validate(String clientId) {
+            this.clientId = clientId;
+        }
+
+        @Override
+        public boolean process(MessageContext message) {
+            // Only SERDES headers, not all user properties
+            Map<String, Object> serdesHeaders = new HashMap<>();
+            for (UserProperty prop : message.userProperties) {
+                if (SerdesSupport.isSerdesHeader(prop.getKey())) {
+                    serdesHeaders.put(prop.getKey(), prop.getValue());
+                }
+            }
+            // Ensure SCHEMA_ID_STRING is present (for cases where only numeric ID was provided)
+            serdesHeaders.putIfAbsent("SCHEMA_ID_STRING", message.schemaArtifactId());
+
+            try {
+                // A route with its own schema only accepts messages declaring that artifact
+                SubscriptionRouter.Route route = message.route;
+                if (route != null && route.schemaEnforced
+                        && !route.schemaArtifactId.equals(serdesHeaders.get("SCHEMA_ID_STRING"))) {
+                    throw new IllegalArgumentException("Schema mismatch on route " + route.name + ": message declares "
+                        + serdesHeaders.get("SCHEMA_ID_STRING") + ", route expects " + route.schemaArtifactId);
+                }
+
+                boolean fullValidation = true;
+                TrustMarker marker = TrustMarker.get();
+                if (marker != null) {
+                    TrustMarker.Verdict verdict = marker.verify(serdesHeaders, message.payload,
+                        message.userProperty(TrustMarker.PROPERTY));
+                    fullValidation = verdict != TrustMarker.Verdict.TRUSTED || marker.sampleForValidation();
+                }
+
+                if (fullValidation) {
+                    message.value = deserialize(message, serdesHeaders);
+                    message.validated = true;
+                    // ELK: Log successful validation (sampled); trusted skips were validated by the publisher
+                    ValidationLogger.logSuccessfulValidation(
+                        ValidationLogger.ClientType.SUBSCRIBER,
+                        message.messageId != null ? message.messageId : "unknown",
+                        message.schemaArtifactId(),
+                        message.topic,
+                        clientId,
+                        sensorIdOf(message.value));
+                } else {
+                    message.value = JSON.readTree(message.payload);
+                }
+                return true;
+            } catch (Exception e) {
+                message.fail(e);
+                // ELK: message passed publisher validation but failed subscriber validation
+                ValidationLogger.logSubscriberValidationFailure(
+                    message.messageId != null ? message.messageId : "unknown",
+                    message.schemaArtifactId(),
+                    message.topic,
+                    e,
+                    clientId,
+                    sensorIdOf(message.payload));
+                return false;
+            }
+        }
+
+        private static JsonNode deserialize(MessageContext message, Map<String, Object> serdesHeaders) throws Exception {
+            com.solace.serdes.jsonschema.JsonSchemaDeserializer<JsonNode> deserializer = SerdesSupport.getJsonDeserializer();
+            PipelineEvents.Deserialize event = new PipelineEvents.Deserialize();
+            event.begin();
+            try {
+                JsonNode value = deserializer.deserialize(message.topic, message.payload, serdesHeaders);
+                event.success = true;
+                return value;
+            } finally {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.topic = message.topic;
+                    event.schemaId = String.valueOf(serdesHeaders.get("SCHEMA_ID_STRING"));
+                    event.payloadSize = message.payload.length;
+                    event.commit();
+                }
+            }
+        }
+
+        private static String sensorIdOf(JsonNode value) {
+            JsonNode sensor = value == null ? null : value.get("sensorId");
+            return sensor == null ? null : sensor.asText();
+        }
+
+        private static String sensorIdOf(byte[] payload) {
+            try {
+                return sensorIdOf(JSON.readTree(payload));
+            } catch (Exception e) {
+                return null; // not even JSON
+            }
+        }
+    }
+
+    /**
+     * Pull sensor fields out of the validated value for sinks
+     */
+    public static final class Enrich implements MessagePipeline.Stage {
+        @Override
+        public boolean process(MessageContext message) {
+            if (message.value != null) {
+                JsonNode sensor = message.value.get("sensorId");
+                JsonNode temperature = message.value.get("temperature");
+                message.sensorId = sensor != null ? sensor.asText() : null;
+                message.temperature = temperature != null && temperature.isNumber() ? temperature.asDouble() : null;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Default sink: counts outcomes and prints one summary line per pipeline.summary.interval.ms
+     */
+    public static final class Count implements MessagePipeline.Stage {
+        private final LongAdder received = new LongAdder();
+        private final LongAdder validated = new LongAdder();
+        private final LongAdder trusted = new LongAdder();
+        private final LongAdder duplicates = new LongAdder();
+        private final Map<String, LongAdder> failures = new ConcurrentHashMap<>();
+        private final long intervalMs = TuningConfig.get().getLong("pipeline.summary.interval.ms", 10_000L);
+        private final AtomicLong nextSummary = new AtomicLong(System.currentTimeMillis() + intervalMs);
+        private long lastReceived;
+
+        @Override
+        public boolean process(MessageContext message) {
+            received.increment();
+            if (message.isDropped()) {
+                duplicates.increment();
+            } else if (message.isFailed()) {
+                failures.computeIfAbsent(message.errorCode(), k -> new LongAdder()).increment();
+            } else if (message.validated) {
+                validated.increment();
+            } else {
+                trusted.increment();
+            }
+            long now = System.currentTimeMillis();
+            long due = nextSummary.get();
+            if (intervalMs > 0 && now >= due && nextSummary.compareAndSet(due, now + intervalMs)) {
+                printSummary(intervalMs + now - due);
+            }
+            return true;
+        }
+
+        @Override
+        public void close() {
+            printSummary(0);
+        }
+
+        private synchronized void printSummary(long windowMs) {
+            long total = received.sum();
+            String rate = windowMs > 0 ? String.format(" (%.0f/s)", (total - lastReceived) * 1000.0 / windowMs) : "";
+            lastReceived = total;
+            StringBuilder line = new StringBuilder("[PIPELINE] received=").append(total).append(rate)
+                .append(" validated=").append(validated.sum())
+                .append(" trusted=").append(trusted.sum())
+                .append(" duplicates=").append(duplicates.sum());
+            for (Map.Entry<String, LongAdder> e : failures.entrySet()) {
+                line.append(' ').append(e.getKey()).append('=').append(e.getValue().sum());
+            }
+            System.out.println(line);
+        }
+    }
+
+    /**
+     * Full per-message dump (topic, QoS, payload, MQTT5 and user properties,
+     * outcome), at most pipeline.debug.max.per.second messages per second
+     */
+    public static final class Debug implements MessagePipeline.Stage {
+        private final AtomicLong windowStart = new AtomicLong();
+        private final AtomicLong printedInWindow = new AtomicLong();
+        private final LongAdder suppressed = new LongAdder();
+
+        @Override
+        public boolean process(MessageContext message) {
+            if (!admit()) {
+                suppressed.increment();
+                return true;
+            }
+            long skipped = suppressed.sumThenReset();
+            StringBuilder out = new StringBuilder(512);
+            if (skipped > 0) {
+                out.append("(").append(skipped).append(" messages not shown)\n");
+            }
+            out.append("\n=== Message Received ===\n");
+            out.append("Topic: ").append(message.topic).append('\n');
+            out.append("QoS: ").append(message.message.getQos()).append('\n');
+            out.append("Retained: ").append(message.message.isRetained()).append('\n');
+            out.append("Payload: ").append(new String(message.payload, StandardCharsets.UTF_8)).append('\n');
+            if (message.isDropped()) {
+                out.append("Duplicate: dropped\n");
+            } else if (message.isFailed()) {
+                out.append("SERDES validation: FAILED (").append(message.errorCode()).append(")\n");
+                out.append("  Reason: ").append(message.error().getMessage()).append('\n');
+            } else if (message.value != null) {
+                out.append("SERDES validation: ").append(message.validated ? "PASSED" : "SKIPPED (trusted publisher mark)").append('\n');
+                out.append("Deserialized JSON: ").append(SerdesSupport.jsonToString(message.value)).append('\n');
+            }
+
+            MqttProperties properties = message.properties;
+            if (properties != null) {
+                out.append("\n--- MQTT5 Properties ---\n");
+                if (properties.getMessageExpiryInterval() != null) {
+                    out.append("Message Expiry Interval: ").append(properties.getMessageExpiryInterval()).append(" seconds\n");
+                }
+                Boolean payloadFormat = properties.getPayloadFormat();
+                if (payloadFormat != null) {
+                    out.append("Payload Format: ").append(payloadFormat ? "UTF-8" : "Binary").append('\n');
+                }
+                if (properties.getContentType() != null) {
+                    out.append("Content Type: ").append(properties.getContentType()).append('\n');
+                }
+                if (properties.getResponseTopic() != null) {
+                    out.append("Response Topic: ").append(properties.getResponseTopic()).append('\n');
+                }
+                if (properties.getCorrelationData() != null) {
+                    out.append("Correlation Data: ")
+                       .append(new String(properties.getCorrelationData(), StandardCharsets.UTF_8)).append('\n');
+                }
+                if (properties.getTopicAlias() != null) {
+                    out.append("Topic Alias: ").append(properties.getTopicAlias()).append('\n');
+                }
+                if (!message.userProperties.isEmpty()) {
+                    out.append("\n--- User Properties ---\n");
+                    for (UserProperty userProperty : message.userProperties) {
+                        out.append("  - ").append(userProperty.getKey()).append(": ").append(userProperty.getValue()).append('\n');
+                    }
+                    String schemaId = message.userProperty("SCHEMA_ID_STRING");
+                    if (schemaId != null) {
+                        out.append("SERDES Schema ID: ").append(schemaId).append('\n');
+                    }
+                }
+            }
+            out.append("========================\n");
+            // One write per message so lanes do not interleave lines
+            System.out.println(out);
+            return true;
+        }
+
+        private boolean admit() {
+            long limit = TuningConfig.get().getLong("pipeline.debug.max.per.second", 10L);
+            long second = System.currentTimeMillis() / 1000;
+            long start = windowStart.get();
+            if (start != second && windowStart.compareAndSet(start, second)) {
+                printedInWindow.set(0);
+            }
+            return printedInWindow.incrementAndGet() <= limit;
+        }
+    }
+
+    /**
+     * Feed validated readings to the per-sensor window aggregator
+     */
+    public static final class Aggregate implements MessagePipeline.Stage {
+        private final SensorAggregator aggregator;
+
+        public Aggregate(SensorAggregator aggregator) {
+            this.aggregator = aggregator;
+        }
+
+        @Override
+        public boolean process(MessageContext message) {
+            if (!message.isFailed() && !message.isDropped() && message.sensorId != null && message.temperature != null) {
+                aggregator.record(message.sensorId, message.temperature);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Run the handler configured for the message's subscription route (routes.<name>.handler)
+     */
+    public static final class RouteHandler implements MessagePipeline.Stage {
+        @Override
+        public boolean process(MessageContext message) throws Exception {
+            if (message.route != null && message.route.handler != null) {
+                message.route.handler.process(message);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Queue a validation ack if the publisher asked for a response (duplicates are not acked again)
+     */
+    public static final class Ack implements MessagePipeline.Stage {
+        private final AckBatcher acks;
+
+        public Ack(AckBatcher acks) {
+            this.acks = acks;
+        }
+
+        @Override
+        public boolean process(MessageContext message) {
+            MqttProperties properties = message.properties;
+            if (message.isDropped() || properties == null
+                    || properties.getResponseTopic() == null || properties.getCorrelationData() == null) {
+                return true;
+            }
+            acks.ack(properties.getResponseTopic(), properties.getCorrelationData(), !message.isFailed(), message.errorCode());
+            return true;
+        }
+    }
+}
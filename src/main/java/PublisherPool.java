@@ -0,0 +1,501 @@
+import org.eclipse.paho.mqttv5.client.IMqttToken;
+import org.eclipse.paho.mqttv5.client.MqttActionListener;
+import org.eclipse.paho.mqttv5.client.MqttAsyncClient;
+import org.eclipse.paho.mqttv5.client.MqttCallback;
+import org.eclipse.paho.mqttv5.client.MqttClientException;
+import org.eclipse.paho.mqttv5.client.MqttConnectionOptions;
+import org.eclipse.paho.mqttv5.client.MqttDisconnectResponse;
+import org.eclipse.paho.mqttv5.client.persist.MemoryPersistence;
+import org.eclipse.paho.mqttv5.common.MqttException;
+import org.eclipse.paho.mqttv5.common.MqttMessage;
+import org.eclipse.paho.mqttv5.common.packet.MqttProperties;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Pool of K publisher connections, each with its own client ID.
+ *
+ * Readings are routed to a connection by hashing the sensor ID, so all
+ * readings from one sensor leave over the same connection and keep their
+ * order. When a connection is unhealthy (disconnected, repeatedly failing, or
+ * not yet subscribed to its ack response topic)
+ * its sensors move to the next healthy connection until it recovers: a
+ * failing connection is tried again after a cooldown, and a connection that
+ * could not connect at startup is retried in the background.
+ * Per-connection in-flight counts and publish-token latency are tracked for
+ * {@link #printStats()}.
+ */
+public final class PublisherPool {
+
+    // Consecutive publish failures before a connection is skipped
+    private static final int MAX_CONSECUTIVE_FAILURES = 3;
+    // How long a failing connection is skipped before it is tried again
+    private static final long FAILURE_COOLDOWN_MS = 5_000L;
+    // Delay between background connect or subscribe retries
+    private static final long CONNECT_RETRY_MS = 5_000L;
+
+    /**
+     * One pooled connection and its statistics
+     */
+    public static final class Connection {
+        final int index;
+        final String clientId;
+        MqttAsyncClient client;
+        MqttConnectionOptions options;
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicLong published = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        final AtomicLong totalLatencyNanos = new AtomicLong();
+        final AtomicLong maxLatencyNanos = new AtomicLong();
+        final AtomicInteger consecutiveFailures = new AtomicInteger();
+        volatile long benchedUntil;
+        // True while connectOne subscribes to the response topic itself
+        volatile boolean awaitingInitialConnect;
+        // True from a (re)connect until the response topic is subscribed: acks would be lost
+        volatile boolean awaitingResponses;
+        // Broker's Receive Maximum from the CONNACK (65535 when not announced)
+        volatile int receiveMaximum = 65535;
+        // Thread parked in publish() waiting for in-flight capacity; woken by completions
+        volatile Thread capacityWaiter;
+
+        Connection(int index, String clientId) {
+            this.index = index;
+            this.clientId = clientId;
+        }
+
+        public String clientId() {
+            return clientId;
+        }
+
+        /**
+         * Topic on which this connection receives validation acks
+         */
+        public String responseTopic() {
+            return MqttConfig.RESPONSE_TOPIC + "/" + clientId;
+        }
+
+        public MqttAsyncClient client() {
+            return client;
+        }
+
+        public int inFlight() {
+            return inFlight.get();
+        }
+
+        public boolean isHealthy() {
+            if (client == null || !client.isConnected() || awaitingResponses) {
+                return false;
+            }
+            // Past the cooldown a failing connection is tried again; its next failure benches it again
+            return consecutiveFailures.get() < MAX_CONSECUTIVE_FAILURES || System.currentTimeMillis() >= benchedUntil;
+        }
+
+        double averageLatencyMs() {
+            long count = published.get();
+            return count == 0 ? 0.0 : totalLatencyNanos.get() / (count * 1_000_000.0);
+        }
+
+        void recordSuccess(long latencyNanos) {
+            published.incrementAndGet();
+            totalLatencyNanos.addAndGet(latencyNanos);
+            maxLatencyNanos.accumulateAndGet(latencyNanos, Math::max);
+            consecutiveFailures.set(0);
+        }
+
+        void recordFailure() {
+            failed.incrementAndGet();
+            if (consecutiveFailures.incrementAndGet() >= MAX_CONSECUTIVE_FAILURES) {
+                benchedUntil = System.currentTimeMillis() + FAILURE_COOLDOWN_MS;
+            }
+        }
+    }
+
+    private final Connection[] connections;
+    private volatile Consumer<MqttMessage> responseHandler;
+    private volatile AdaptiveRateController rateController;
+    private ScheduledExecutorService reconnects;
+
+    public PublisherPool(int size) {
+        connections = new Connection[Math.max(1, size)];
+        for (int i = 0; i < connections.length; i++) {
+            connections[i] = new Connection(i, MqttConfig.generateClientId("mqtt5-publisher-" + i));
+        }
+    }
+
+    public int size() {
+        return connections.length;
+    }
+
+    /**
+     * Subscribe every connection to its response topic and pass replies to the handler.
+     * Must be set before {@link #connect()}.
+     */
+    public void setResponseHandler(Consumer<MqttMessage> handler) {
+        this.responseHandler = handler;
+    }
+
+    /**
+     * Feed publish latency, failures and Receive Maximum saturation to a rate controller
+     */
+    public void setRateController(AdaptiveRateController controller) {
+        this.rateController = controller;
+    }
+
+    public Connection connection(int index) {
+        return connections[index];
+    }
+
+    /**
+     * Connect every connection. One that fails is left unhealthy and retried in
+     * the background; this only throws if no connection could be established.
+     */
+    public void connect() throws MqttException {
+        System.out.println("Connecting " + connections.length + " publisher connection(s) to: " + MqttConfig.BROKER_URL);
+        System.out.println("Using username: " + MqttConfig.USERNAME);
+        MqttException lastFailure = null;
+        int connected = 0;
+        for (Connection connection : connections) {
+            try {
+                connectOne(connection);
+                connected++;
+            } catch (MqttException e) {
+                lastFailure = e;
+                System.err.println("   " + connection.clientId + " stays unhealthy; retrying every " + CONNECT_RETRY_MS + "ms");
+                scheduleReconnect(connection);
+            }
+        }
+        if (connected == 0) {
+            throw lastFailure;
+        }
+    }
+
+    /**
+     * Pick the connection for a sensor: its home connection by hash, or the
+     * next healthy one if the home connection is unhealthy.
+     */
+    public Connection select(String sensorId) {
+        int home = ((sensorId == null ? 0 : sensorId.hashCode()) & 0x7fffffff) % connections.length;
+        for (int i = 0; i < connections.length; i++) {
+            Connection candidate = connections[(home + i) % connections.length];
+            if (candidate.isHealthy()) {
+                return candidate;
+            }
+        }
+        // Nothing healthy: stay on the home connection and let the publish fail visibly
+        return connections[home];
+    }
+
+    /**
+     * Publish asynchronously on the given connection, tracking in-flight count and latency.
+     * QoS 1/2 publishes wait (up to the connection timeout) while the connection already
+     * has the broker's Receive Maximum in flight; QoS 0 is not limited by it.
+     */
+    public IMqttToken publish(Connection connection, String topic, MqttMessage message) throws MqttException {
+        AdaptiveRateController controller = rateController;
+        if (message.getQos() > 0 && connection.inFlight.get() >= connection.receiveMaximum) {
+            if (controller != null) {
+                controller.onError(); // saturated: the broker is not keeping up
+            }
+            awaitCapacity(connection);
+        }
+        long start = System.nanoTime();
+        connection.inFlight.incrementAndGet();
+        PipelineEvents.Publish event = new PipelineEvents.Publish();
+        event.begin();
+        try {
+            IMqttToken token = connection.client.publish(topic, message, null, new MqttActionListener() {
+                @Override
+                public void onSuccess(IMqttToken token) {
+                    long latency = System.nanoTime() - start;
+                    release(connection);
+                    connection.recordSuccess(latency);
+                    if (controller != null) {
+                        controller.onAck(latency);
+                    }
+                    recordCompletion(topic, message, latency, true);
+                }
+
+                @Override
+                public void onFailure(IMqttToken token, Throwable exception) {
+                    release(connection);
+                    connection.recordFailure();
+                    if (controller != null) {
+                        controller.onError();
+                    }
+                    recordCompletion(topic, message, System.nanoTime() - start, false);
+                    System.err.println("Publish failed on " + connection.clientId + ": " + exception.getMessage());
+                }
+            });
+            event.success = true;
+            return token;
+        } catch (MqttException e) {
+            release(connection);
+            connection.recordFailure();
+            if (controller != null) {
+                controller.onError();
+            }
+            throw e;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.topic = topic;
+                event.payloadSize = message.getPayload().length;
+                event.commit();
+            }
+        }
+    }
+
+    private static void recordCompletion(String topic, MqttMessage message, long latencyNanos, boolean success) {
+        PipelineEvents.PublishComplete event = new PipelineEvents.PublishComplete();
+        if (event.shouldCommit()) {
+            event.topic = topic;
+            event.payloadSize = message.getPayload().length;
+            event.latency = latencyNanos;
+            event.success = success;
+            event.commit();
+        }
+    }
+
+    /**
+     * Park until a completion frees in-flight capacity; fails the publish after the connection timeout
+     */
+    private static void awaitCapacity(Connection connection) throws MqttException {
+        long deadline = System.nanoTime() + MqttConfig.CONNECTION_TIMEOUT * 1_000_000_000L;
+        connection.capacityWaiter = Thread.currentThread();
+        try {
+            while (connection.inFlight.get() >= connection.receiveMaximum && connection.client.isConnected()) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new MqttException(MqttClientException.REASON_CODE_MAX_INFLIGHT);
+                }
+                // Bounded park in case another thread replaced us as the waiter
+                LockSupport.parkNanos(Math.min(remaining, 10_000_000L));
+            }
+        } finally {
+            connection.capacityWaiter = null;
+        }
+    }
+
+    private static void release(Connection connection) {
+        connection.inFlight.decrementAndGet();
+        Thread waiter = connection.capacityWaiter;
+        if (waiter != null) {
+            LockSupport.unpark(waiter);
+        }
+    }
+
+    public void printStats() {
+        System.out.println("=== Publisher Pool Stats ===");
+        for (Connection c : connections) {
+            System.out.println(String.format(
+                "  [%d] %s healthy=%s inFlight=%d/%d published=%d failed=%d avgLatency=%.2fms maxLatency=%.2fms",
+                c.index, c.clientId, c.isHealthy(), c.inFlight.get(), c.receiveMaximum, c.published.get(),
+                c.failed.get(), c.averageLatencyMs(), c.maxLatencyNanos.get() / 1_000_000.0));
+        }
+        System.out.println("============================");
+    }
+
+    public void disconnect() {
+        synchronized (this) {
+            if (reconnects != null) {
+                reconnects.shutdownNow();
+            }
+        }
+        for (Connection connection : connections) {
+            MqttAsyncClient client = connection.client;
+            if (client == null) {
+                continue;
+            }
+            try {
+                if (client.isConnected()) {
+                    client.disconnect().waitForCompletion(5000);
+                }
+            } catch (MqttException e) {
+                System.err.println("Disconnect failed for " + connection.clientId + ": " + e.getMessage());
+            } finally {
+                try {
+                    client.close();
+                } catch (MqttException e) {
+                    System.err.println("Failed to close client " + connection.clientId + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void connectOne(Connection connection) throws MqttException {
+        System.out.println("Client ID: " + connection.clientId);
+        MqttAsyncClient client = new MqttAsyncClient(MqttConfig.BROKER_URL, connection.clientId, new MemoryPersistence());
+
+        // Set up connection options for MQTT5
+        MqttConnectionOptions options = new MqttConnectionOptions();
+        options.setCleanStart(true); // MQTT5 uses cleanStart instead of cleanSession
+        options.setKeepAliveInterval(MqttConfig.KEEP_ALIVE_INTERVAL);
+        options.setAutomaticReconnect(true);
+        options.setConnectionTimeout(MqttConfig.CONNECTION_TIMEOUT);
+
+        // Set authentication credentials from config (if provided)
+        if (MqttConfig.USERNAME != null && !MqttConfig.USERNAME.isEmpty()) {
+            options.setUserName(MqttConfig.USERNAME);
+            options.setPassword(MqttConfig.PASSWORD.getBytes());
+        }
+
+        client.setCallback(new MqttCallback() {
+            @Override
+            public void disconnected(MqttDisconnectResponse disconnectResponse) {
+                System.out.println("Disconnected [" + connection.clientId + "]: " + disconnectResponse.getReasonString());
+            }
+
+            @Override
+            public void mqttErrorOccurred(MqttException exception) {
+                System.err.println("MQTT Error [" + connection.clientId + "]: " + exception.getMessage());
+            }
+
+            @Override
+            public void messageArrived(String topic, MqttMessage message) throws Exception {
+                // Only the connection's own response topic is subscribed
+                Consumer<MqttMessage> handler = responseHandler;
+                if (handler != null) {
+                    handler.accept(message);
+                }
+            }
+
+            @Override
+            public void deliveryComplete(IMqttToken token) {
+                // Completion is tracked per publish in PublisherPool.publish
+            }
+
+            @Override
+            public void connectComplete(boolean reconnect, String serverURI) {
+                System.out.println("Connection completed to: " + serverURI + " [" + connection.clientId + "]" +
+                                 (reconnect ? " (reconnected)" : " (initial connection)"));
+                connection.consecutiveFailures.set(0);
+                // Clean start drops subscriptions, so every later (re)connect subscribes again
+                if (responseHandler != null && !connection.awaitingInitialConnect) {
+                    connection.awaitingResponses = true;
+                    subscribeResponses(connection);
+                }
+            }
+
+            @Override
+            public void authPacketArrived(int reasonCode, MqttProperties properties) {
+                System.out.println("Auth packet received with reason code: " + reasonCode);
+            }
+        });
+        connection.client = client;
+        connection.options = options;
+
+        connection.awaitingInitialConnect = true;
+        try {
+            IMqttToken connectToken = client.connect(options);
+            connectToken.waitForCompletion(MqttConfig.CONNECTION_TIMEOUT * 1000L);
+            System.out.println("Successfully connected to MQTT5 broker with authentication [" + connection.clientId + "]");
+            applyConnack(connection, connectToken.getResponseProperties());
+        } catch (MqttException e) {
+            connection.awaitingInitialConnect = false;
+            System.err.println("Failed to connect [" + connection.clientId + "]: " + e.getMessage());
+            if (e.getMessage() != null && e.getMessage().contains("Not authorized")) {
+                System.err.println("   Authentication failed - check username/password in MqttConfig.java");
+            }
+            throw e;
+        }
+        if (responseHandler != null) {
+            // Connected: a failed subscription is retried rather than failing the connection
+            connection.awaitingResponses = true;
+            try {
+                client.subscribe(connection.responseTopic(), TuningConfig.get().subscribeQos())
+                      .waitForCompletion(MqttConfig.CONNECTION_TIMEOUT * 1000L);
+                connection.awaitingResponses = false;
+                System.out.println("Listening for validation acks on: " + connection.responseTopic());
+            } catch (MqttException e) {
+                System.err.println("Failed to subscribe to " + connection.responseTopic() + ": " + e.getMessage() +
+                                   "; retrying every " + CONNECT_RETRY_MS + "ms");
+                retryLater(() -> subscribeResponses(connection));
+            }
+        }
+        connection.awaitingInitialConnect = false;
+    }
+
+    /**
+     * Asynchronous response-topic subscription, safe to start from connectComplete.
+     * A failure is retried while connected; a disconnect resubscribes on reconnect.
+     */
+    private void subscribeResponses(Connection connection) {
+        if (!connection.client.isConnected()) {
+            return;
+        }
+        try {
+            connection.client.subscribe(connection.responseTopic(), TuningConfig.get().subscribeQos(), null,
+                new MqttActionListener() {
+                    @Override
+                    public void onSuccess(IMqttToken token) {
+                        connection.awaitingResponses = false;
+                        System.out.println("Listening for validation acks on: " + connection.responseTopic());
+                    }
+
+                    @Override
+                    public void onFailure(IMqttToken token, Throwable exception) {
+                        System.err.println("Failed to subscribe to " + connection.responseTopic() + ": " + exception.getMessage());
+                        retryLater(() -> subscribeResponses(connection));
+                    }
+                });
+        } catch (MqttException e) {
+            System.err.println("Failed to subscribe to " + connection.responseTopic() + ": " + e.getMessage());
+            retryLater(() -> subscribeResponses(connection));
+        }
+    }
+
+    private static void applyConnack(Connection connection, MqttProperties connack) {
+        if (connack != null && connack.getReceiveMaximum() != null) {
+            connection.receiveMaximum = connack.getReceiveMaximum();
+            System.out.println("Broker Receive Maximum: " + connection.receiveMaximum);
+        }
+    }
+
+    /**
+     * Keep trying a connection that never connected; once it has, Paho's automatic reconnect takes over
+     */
+    private void scheduleReconnect(Connection connection) {
+        retryLater(() -> {
+            if (connection.client.isConnected()) {
+                return;
+            }
+            try {
+                connection.client.connect(connection.options, null, new MqttActionListener() {
+                    @Override
+                    public void onSuccess(IMqttToken token) {
+                        applyConnack(connection, token.getResponseProperties());
+                    }
+
+                    @Override
+                    public void onFailure(IMqttToken token, Throwable exception) {
+                        scheduleReconnect(connection);
+                    }
+                });
+            } catch (MqttException e) {
+                scheduleReconnect(connection); // e.g. the first attempt is still in progress
+            }
+        });
+    }
+
+    /**
+     * Run a connect or subscribe retry after CONNECT_RETRY_MS on the background thread
+     */
+    private synchronized void retryLater(Runnable task) {
+        if (reconnects == null) {
+            reconnects = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "publisher-pool-reconnect");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        if (!reconnects.isShutdown()) {
+            reconnects.schedule(task, CONNECT_RETRY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+}
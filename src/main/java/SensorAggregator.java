@@ -0,0 +1,295 @@
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Streaming per-sensor window aggregation (count, min, max, avg temperature
+ * and message rate) over processing time.
+ *
+ * Each window of windowMs is split into windowMs / slideMs buckets; every
+ * slideMs the buckets of each sensor are combined into one result and the
+ * oldest bucket is cleared. windowMs == slideMs gives tumbling windows,
+ * a larger windowMs gives sliding windows.
+ *
+ * State lives in primitive arrays indexed by a sensor slot from an
+ * open-addressed String -> int table, so there is no per-reading boxing.
+ * Memory is bounded by maxSensors: sensors idle for idleWindows slides are
+ * dropped when the table is compacted, and readings for new sensors beyond
+ * the limit are counted as overflow instead of growing the state.
+ */
+public final class SensorAggregator implements AutoCloseable {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private final long windowMs;
+    private final long slideMs;
+    private final int buckets;
+    private final int maxSensors;
+    private final int idleWindows;
+    private final int chunkSize;
+    private final Consumer<String> sink;
+    private final ScheduledExecutorService emitter;
+
+    // Open-addressed sensorId -> slot table (linear probing, power-of-two capacity)
+    private String[] tableKeys;
+    private int[] tableSlots;
+    private int tableMask;
+
+    // Per slot
+    private String[] sensorIds;
+    private long[] lastSeenSlide;
+    // Per slot * bucket
+    private long[] counts;
+    private double[] sums;
+    private double[] mins;
+    private double[] maxs;
+
+    private int sensorCount;
+    private long currentSlide;
+    private long overflow;
+
+    public SensorAggregator(long windowMs, long slideMs, int maxSensors, int idleWindows,
+                            int chunkSize, Consumer<String> sink) {
+        this.slideMs = Math.max(1L, slideMs);
+        this.windowMs = Math.max(this.slideMs, windowMs);
+        this.buckets = (int) Math.max(1L, this.windowMs / this.slideMs);
+        this.maxSensors = Math.max(1, maxSensors);
+        this.idleWindows = Math.max(1, idleWindows);
+        this.chunkSize = Math.max(1, chunkSize);
+        this.sink = sink;
+        this.currentSlide = System.currentTimeMillis() / this.slideMs;
+        allocate(Math.min(this.maxSensors, 1024));
+        this.emitter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "sensor-aggregator");
+            t.setDaemon(true);
+            return t;
+        });
+        long firstDelay = this.slideMs - System.currentTimeMillis() % this.slideMs;
+        emitter.scheduleAtFixedRate(this::emitSafely, firstDelay, this.slideMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Build from tuning settings, emitting to the given sink
+     */
+    public static SensorAggregator fromTuning(Consumer<String> sink) {
+        TuningConfig tuning = TuningConfig.get();
+        long windowMs = tuning.getLong("aggregation.window.ms", 60_000L);
+        return new SensorAggregator(
+            windowMs,
+            tuning.getLong("aggregation.slide.ms", windowMs),
+            tuning.getInt("aggregation.max.sensors", 200_000),
+            tuning.getInt("aggregation.idle.windows", 10),
+            tuning.getInt("aggregation.chunk.size", 500),
+            sink);
+    }
+
+    /**
+     * Record one reading
+     */
+    public synchronized void record(String sensorId, double temperature) {
+        int slot = slotFor(sensorId);
+        if (slot < 0) {
+            overflow++;
+            return;
+        }
+        int i = slot * buckets + (int) (currentSlide % buckets);
+        if (counts[i] == 0) {
+            sums[i] = 0;
+            mins[i] = temperature;
+            maxs[i] = temperature;
+        } else {
+            if (temperature < mins[i]) mins[i] = temperature;
+            if (temperature > maxs[i]) maxs[i] = temperature;
+        }
+        counts[i]++;
+        sums[i] += temperature;
+        lastSeenSlide[slot] = currentSlide;
+    }
+
+    public synchronized int sensorCount() {
+        return sensorCount;
+    }
+
+    @Override
+    public void close() {
+        emitter.shutdownNow();
+    }
+
+    private void emitSafely() {
+        try {
+            emit();
+        } catch (Exception e) {
+            System.err.println("Aggregation emit failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Emit results for the window ending now, then advance to the next slide
+     */
+    synchronized void emit() {
+        long windowEnd = (currentSlide + 1) * slideMs;
+        long windowStart = windowEnd - windowMs;
+        ArrayNode results = JSON.createArrayNode();
+        for (int slot = 0; slot < sensorCount; slot++) {
+            long count = 0;
+            double sum = 0;
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            int base = slot * buckets;
+            for (int b = 0; b < buckets; b++) {
+                long c = counts[base + b];
+                if (c > 0) {
+                    count += c;
+                    sum += sums[base + b];
+                    min = Math.min(min, mins[base + b]);
+                    max = Math.max(max, maxs[base + b]);
+                }
+            }
+            if (count == 0) {
+                continue;
+            }
+            ObjectNode result = results.addObject();
+            result.put("sensor_id", sensorIds[slot]);
+            result.put("count", count);
+            result.put("min", min);
+            result.put("max", max);
+            result.put("avg", sum / count);
+            result.put("rate_per_sec", count * 1000.0 / windowMs);
+            if (results.size() >= chunkSize) {
+                flush(results, windowStart, windowEnd);
+                results = JSON.createArrayNode();
+            }
+        }
+        if (results.size() > 0 || overflow > 0) {
+            flush(results, windowStart, windowEnd);
+        }
+        overflow = 0;
+
+        // Advance: the bucket for the next slide starts empty
+        currentSlide++;
+        int next = (int) (currentSlide % buckets);
+        for (int slot = 0; slot < sensorCount; slot++) {
+            counts[slot * buckets + next] = 0;
+        }
+        evictIdle();
+    }
+
+    private void flush(ArrayNode results, long windowStart, long windowEnd) {
+        ObjectNode chunk = JSON.createObjectNode();
+        chunk.put("window_start", windowStart);
+        chunk.put("window_end", windowEnd);
+        chunk.put("window_ms", windowMs);
+        chunk.put("sensors_tracked", sensorCount);
+        if (overflow > 0) {
+            chunk.put("overflow_readings", overflow);
+        }
+        chunk.set("results", results);
+        sink.accept(SerdesSupport.jsonToString(chunk));
+    }
+
+    private int slotFor(String sensorId) {
+        int h = mix(sensorId.hashCode()) & tableMask;
+        while (tableKeys[h] != null) {
+            if (tableKeys[h].equals(sensorId)) {
+                return tableSlots[h];
+            }
+            h = (h + 1) & tableMask;
+        }
+        if (sensorCount >= maxSensors) {
+            return -1;
+        }
+        if (sensorCount >= sensorIds.length) {
+            grow();
+            return slotFor(sensorId);
+        }
+        int slot = sensorCount++;
+        tableKeys[h] = sensorId;
+        tableSlots[h] = slot;
+        sensorIds[slot] = sensorId;
+        return slot;
+    }
+
+    /**
+     * Drop sensors with no readings in the last idleWindows slides and re-pack the slots
+     */
+    private void evictIdle() {
+        long cutoff = currentSlide - idleWindows;
+        int kept = 0;
+        for (int slot = 0; slot < sensorCount; slot++) {
+            if (lastSeenSlide[slot] < cutoff) {
+                continue;
+            }
+            if (kept != slot) {
+                sensorIds[kept] = sensorIds[slot];
+                lastSeenSlide[kept] = lastSeenSlide[slot];
+                System.arraycopy(counts, slot * buckets, counts, kept * buckets, buckets);
+                System.arraycopy(sums, slot * buckets, sums, kept * buckets, buckets);
+                System.arraycopy(mins, slot * buckets, mins, kept * buckets, buckets);
+                System.arraycopy(maxs, slot * buckets, maxs, kept * buckets, buckets);
+            }
+            kept++;
+        }
+        if (kept == sensorCount) {
+            return;
+        }
+        Arrays.fill(sensorIds, kept, sensorCount, null);
+        Arrays.fill(counts, kept * buckets, sensorCount * buckets, 0L);
+        sensorCount = kept;
+        rebuildTable(tableKeys.length);
+    }
+
+    private void grow() {
+        int capacity = (int) Math.min((long) maxSensors, sensorIds.length * 2L);
+        sensorIds = Arrays.copyOf(sensorIds, capacity);
+        lastSeenSlide = Arrays.copyOf(lastSeenSlide, capacity);
+        counts = Arrays.copyOf(counts, capacity * buckets);
+        sums = Arrays.copyOf(sums, capacity * buckets);
+        mins = Arrays.copyOf(mins, capacity * buckets);
+        maxs = Arrays.copyOf(maxs, capacity * buckets);
+        rebuildTable(tableSizeFor(capacity));
+    }
+
+    private void allocate(int capacity) {
+        sensorIds = new String[capacity];
+        lastSeenSlide = new long[capacity];
+        counts = new long[capacity * buckets];
+        sums = new double[capacity * buckets];
+        mins = new double[capacity * buckets];
+        maxs = new double[capacity * buckets];
+        rebuildTable(tableSizeFor(capacity));
+    }
+
+    private void rebuildTable(int size) {
+        tableKeys = new String[size];
+        tableSlots = new int[size];
+        tableMask = size - 1;
+        for (int slot = 0; slot < sensorCount; slot++) {
+            int h = mix(sensorIds[slot].hashCode()) & tableMask;
+            while (tableKeys[h] != null) {
+                h = (h + 1) & tableMask;
+            }
+            tableKeys[h] = sensorIds[slot];
+            tableSlots[h] = slot;
+        }
+    }
+
+    /**
+     * Power of two at least twice the capacity (load factor <= 0.5)
+     */
+    private static int tableSizeFor(int capacity) {
+        return Integer.highestOneBit(Math.max(2, capacity) * 2 - 1) << 1;
+    }
+
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        return h;
+    }
+}
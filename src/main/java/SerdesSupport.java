@@ -20,39 +20,280 @@ public final class SerdesSupport {
 
     private static final ObjectMapper JSON = new ObjectMapper();
 
-    private static volatile com.solace.serdes.jsonschema.JsonSchemaSerializer<JsonNode> jsonSerializer;
+    private static volatile ConfiguredSerializer jsonSerializer;
     private static volatile com.solace.serdes.jsonschema.JsonSchemaDeserializer<JsonNode> jsonDeserializer;
+    // Validation flag the deserializer was configured with; a live tuning change rebuilds it
+    private static boolean deserializerValidates;
 
     private SerdesSupport() {}
 
-    public static synchronized com.solace.serdes.jsonschema.JsonSchemaSerializer<JsonNode> getJsonSerializer() {
-        if (jsonSerializer == null) {
-            Map<String, Object> config = buildCommonConfig(true);  // Enable validation
+    /**
+     * A serializer together with the validation flag it was configured with,
+     * so callers can tell whether the bytes it produced were validated
+     */
+    public static final class ConfiguredSerializer {
+        public final com.solace.serdes.jsonschema.JsonSchemaSerializer<JsonNode> serializer;
+        public final boolean validates;
+
+        ConfiguredSerializer(com.solace.serdes.jsonschema.JsonSchemaSerializer<JsonNode> serializer, boolean validates) {
+            this.serializer = serializer;
+            this.validates = validates;
+        }
+    }
+
+    public static com.solace.serdes.jsonschema.JsonSchemaSerializer<JsonNode> getJsonSerializer() {
+        return getConfiguredJsonSerializer().serializer;
+    }
+
+    /**
+     * The current serializer, rebuilt when validation.enabled changes
+     */
+    public static synchronized ConfiguredSerializer getConfiguredJsonSerializer() {
+        boolean validate = TuningConfig.get().validateSchema();
+        if (jsonSerializer == null || jsonSerializer.validates != validate) {
+            // Configure with the same flag that is recorded, not a second read of the tuning value
+            Map<String, Object> config = buildCommonConfig(validate);
             com.solace.serdes.jsonschema.JsonSchemaSerializer<JsonNode> serializer =
                     new com.solace.serdes.jsonschema.JsonSchemaSerializer<>();
+            PipelineEvents.SerdesConfigure event = new PipelineEvents.SerdesConfigure();
+            event.begin();
             serializer.configure(config);
-            jsonSerializer = serializer;
+            event.end();
+            if (event.shouldCommit()) {
+                event.schemaId = MqttConfig.SCHEMA_ARTIFACT_ID;
+                event.success = true;
+                event.commit();
+            }
+            jsonSerializer = new ConfiguredSerializer(serializer, validate);
         }
         return jsonSerializer;
     }
 
     public static synchronized com.solace.serdes.jsonschema.JsonSchemaDeserializer<JsonNode> getJsonDeserializer() {
-        if (jsonDeserializer == null) {
-            Map<String, Object> config = buildCommonConfig(true);  // Enable validation
-            com.solace.serdes.jsonschema.JsonSchemaDeserializer<JsonNode> deserializer =
-                    new com.solace.serdes.jsonschema.JsonSchemaDeserializer<>();
-            deserializer.configure(config);
-            jsonDeserializer = deserializer;
+        boolean validate = TuningConfig.get().validateSchema();
+        if (jsonDeserializer == null || deserializerValidates != validate) {
+            jsonDeserializer = newJsonDeserializer(validate);
+            deserializerValidates = validate;
         }
         return jsonDeserializer;
     }
 
+    private static com.solace.serdes.jsonschema.JsonSchemaDeserializer<JsonNode> newJsonDeserializer(boolean validate) {
+        Map<String, Object> config = buildCommonConfig(validate);
+        com.solace.serdes.jsonschema.JsonSchemaDeserializer<JsonNode> deserializer =
+                new com.solace.serdes.jsonschema.JsonSchemaDeserializer<>();
+        PipelineEvents.SerdesConfigure event = new PipelineEvents.SerdesConfigure();
+        event.begin();
+        deserializer.configure(config);
+        event.end();
+        if (event.shouldCommit()) {
+            event.schemaId = MqttConfig.SCHEMA_ARTIFACT_ID;
+            event.success = true;
+            event.commit();
+        }
+        return deserializer;
+    }
+
+    // ---- Bulk validation ----
+
+    /**
+     * One payload to validate in bulk, with either SERDES headers or the
+     * MQTT user properties it arrived with (possibly compressed)
+     */
+    public static final class BulkItem {
+        final String topic;
+        final byte[] payload;
+        final Map<String, Object> headers;
+        final List<UserProperty> userProperties;
+
+        public BulkItem(String topic, byte[] payload, Map<String, Object> headers) {
+            this(topic, payload, headers, null);
+        }
+
+        private BulkItem(String topic, byte[] payload, Map<String, Object> headers, List<UserProperty> userProperties) {
+            this.topic = topic;
+            this.payload = payload;
+            this.headers = headers;
+            this.userProperties = userProperties;
+        }
+
+        /**
+         * Item as received over MQTT or read from a capture; decompressed before validation
+         */
+        public static BulkItem fromUserProperties(String topic, byte[] payload, List<UserProperty> userProperties) {
+            return new BulkItem(topic, payload, null, userProperties);
+        }
+    }
+
+    /**
+     * Outcome for one bulk item; failures carry an ErrorClassifier code instead of throwing
+     */
+    public static final class BulkResult {
+        public final long index;
+        public final boolean valid;
+        public final JsonNode value;
+        public final String errorCode;
+        public final String errorMessage;
+
+        BulkResult(long index, boolean valid, JsonNode value, String errorCode, String errorMessage) {
+            this.index = index;
+            this.valid = valid;
+            this.value = value;
+            this.errorCode = errorCode;
+            this.errorMessage = errorMessage;
+        }
+    }
+
+    /**
+     * Per-worker deserializer and headers map, rebuilt when the validation flag changes
+     */
+    private static final class BulkWorker {
+        final boolean validates = TuningConfig.get().validateSchema();
+        final com.solace.serdes.jsonschema.JsonSchemaDeserializer<JsonNode> deserializer = newJsonDeserializer(validates);
+        final Map<String, Object> headers = new HashMap<>();
+    }
+
+    private static final ThreadLocal<BulkWorker> BULK_WORKERS = new ThreadLocal<>();
+    private static volatile java.util.concurrent.ForkJoinPool bulkPool;
+
+    /**
+     * Validate all items in parallel on the bulk fork/join pool (bulk.parallelism
+     * threads, default one per core). Results are in item order; nothing is thrown per item.
+     */
+    public static List<BulkResult> validateAll(List<BulkItem> items) {
+        return java.util.Arrays.asList(validateChunk(items, 0));
+    }
+
+    /**
+     * Validate a stream of any length in chunks of bulk.chunk.size items, handing
+     * results to the consumer in order; memory stays bounded by one chunk.
+     * Returns the number of items validated.
+     */
+    public static long validateAll(java.util.stream.Stream<BulkItem> items, java.util.function.Consumer<BulkResult> results) {
+        int chunkSize = Math.max(1, TuningConfig.get().getInt("bulk.chunk.size", 8192));
+        java.util.Iterator<BulkItem> it = items.iterator();
+        java.util.List<BulkItem> chunk = new java.util.ArrayList<>(chunkSize);
+        long offset = 0;
+        while (it.hasNext()) {
+            chunk.add(it.next());
+            if (chunk.size() == chunkSize || !it.hasNext()) {
+                for (BulkResult r : validateChunk(chunk, offset)) {
+                    results.accept(r);
+                }
+                offset += chunk.size();
+                chunk.clear();
+            }
+        }
+        return offset;
+    }
+
+    private static BulkResult[] validateChunk(List<BulkItem> items, long baseIndex) {
+        BulkResult[] results = new BulkResult[items.size()];
+        if (!items.isEmpty()) {
+            int leafSize = Math.max(1, TuningConfig.get().getInt("bulk.leaf.size", 64));
+            bulkPool().invoke(new BulkTask(items, results, baseIndex, 0, items.size(), leafSize));
+        }
+        return results;
+    }
+
+    private static java.util.concurrent.ForkJoinPool bulkPool() {
+        java.util.concurrent.ForkJoinPool pool = bulkPool;
+        if (pool == null) {
+            synchronized (SerdesSupport.class) {
+                pool = bulkPool;
+                if (pool == null) {
+                    int parallelism = TuningConfig.get().getInt("bulk.parallelism", Runtime.getRuntime().availableProcessors());
+                    pool = new java.util.concurrent.ForkJoinPool(Math.max(1, parallelism));
+                    bulkPool = pool;
+                }
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Splits an index range in halves down to leafSize items, then validates sequentially
+     */
+    private static final class BulkTask extends java.util.concurrent.RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<BulkItem> items;
+        private final BulkResult[] results;
+        private final long baseIndex;
+        private final int from;
+        private final int to;
+        private final int leafSize;
+
+        BulkTask(List<BulkItem> items, BulkResult[] results, long baseIndex, int from, int to, int leafSize) {
+            this.items = items;
+            this.results = results;
+            this.baseIndex = baseIndex;
+            this.from = from;
+            this.to = to;
+            this.leafSize = leafSize;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > leafSize) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new BulkTask(items, results, baseIndex, from, mid, leafSize),
+                          new BulkTask(items, results, baseIndex, mid, to, leafSize));
+                return;
+            }
+            BulkWorker worker = bulkWorker();
+            for (int i = from; i < to; i++) {
+                results[i] = validateOne(worker, baseIndex + i, items.get(i));
+            }
+        }
+    }
+
+    private static BulkWorker bulkWorker() {
+        BulkWorker worker = BULK_WORKERS.get();
+        if (worker == null || worker.validates != TuningConfig.get().validateSchema()) {
+            if (worker != null) {
+                // validation.enabled flipped: the old deserializer is not used again
+                try {
+                    worker.deserializer.close();
+                } catch (Exception e) {
+                    System.err.println("Failed to close bulk deserializer: " + e.getMessage());
+                }
+            }
+            worker = new BulkWorker();
+            BULK_WORKERS.set(worker);
+        }
+        return worker;
+    }
+
+    private static BulkResult validateOne(BulkWorker worker, long index, BulkItem item) {
+        try {
+            byte[] payload = item.payload;
+            Map<String, Object> headers = worker.headers;
+            headers.clear();
+            if (item.headers != null) {
+                headers.putAll(item.headers);
+            } else if (item.userProperties != null) {
+                payload = PayloadCodec.get().decode(payload, item.userProperties);
+                for (UserProperty up : item.userProperties) {
+                    if (isSerdesHeader(up.getKey())) {
+                        headers.put(up.getKey(), up.getValue());
+                    }
+                }
+            }
+            headers.putIfAbsent("SCHEMA_ID_STRING", MqttConfig.SCHEMA_ARTIFACT_ID);
+            JsonNode value = worker.deserializer.deserialize(item.topic, payload, headers);
+            return new BulkResult(index, true, value, null, null);
+        } catch (Exception e) {
+            return new BulkResult(index, false, null, ErrorClassifier.get().classify(e).code, e.getMessage());
+        }
+    }
+
     public static Map<String, Object> buildCommonConfig(boolean enableValidation) {
         Map<String, Object> config = new HashMap<>();
         config.put(SchemaResolverProperties.REGISTRY_URL, MqttConfig.SCHEMA_REGISTRY_URL);
         config.put(SchemaResolverProperties.AUTH_USERNAME, MqttConfig.SCHEMA_REGISTRY_USERNAME);
         config.put(SchemaResolverProperties.AUTH_PASSWORD, MqttConfig.SCHEMA_REGISTRY_PASSWORD);
-        config.put(JsonSchemaProperties.VALIDATE_SCHEMA, enableValidation && MqttConfig.JSON_VALIDATE_SCHEMA);
+        config.put(JsonSchemaProperties.VALIDATE_SCHEMA, enableValidation);
         // Ensure string-based schema identifiers for cross-protocol compatibility
         config.put(SerdeProperties.SCHEMA_HEADER_IDENTIFIERS, SchemaHeaderId.SCHEMA_ID_STRING);
         return config;
@@ -85,6 +326,13 @@ public final class SerdesSupport {
         return headers;
     }
 
+    /**
+     * Whether a user property is a SERDES header (schema ID and solace.schema.* metadata)
+     */
+    public static boolean isSerdesHeader(String key) {
+        return key.equals("SCHEMA_ID_STRING") || key.startsWith("solace.schema.");
+    }
+
     public static void addSerdesHeadersToUserProps(Map<String, Object> headers, List<UserProperty> userProperties) {
         if (headers == null || headers.isEmpty()) {
             return;
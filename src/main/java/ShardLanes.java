@@ -0,0 +1,124 @@
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fixed set of single-threaded processing lanes. Work is routed to a lane by
+ * hashing its shard key (the topic), so messages for one shard are handled
+ * in arrival order while different shards run in parallel.
+ *
+ * submit() is expected to be called from a single thread (the MQTT callback
+ * thread). It blocks when the lane queue is full, which applies backpressure
+ * without reordering a shard. A resize is applied by the submitting thread on
+ * the next message: a fresh set of lanes takes new work while the old lanes
+ * drain, so ordering within a shard is only relaxed for messages that were
+ * already queued at the moment of the resize.
+ */
+public final class ShardLanes {
+
+    private final String name;
+    private final int queueCapacity;
+    private volatile Lane[] lanes;
+    private volatile int requestedLanes;
+    private int generation;
+
+    public ShardLanes(String name, int laneCount, int queueCapacity) {
+        this.name = name;
+        this.queueCapacity = queueCapacity;
+        this.requestedLanes = Math.max(1, laneCount);
+        this.lanes = startLanes(requestedLanes);
+    }
+
+    public void submit(String shardKey, Runnable task) throws InterruptedException {
+        Lane[] current = lanes;
+        if (current.length != requestedLanes) {
+            current = swapLanes();
+        }
+        int hash = shardKey == null ? 0 : shardKey.hashCode();
+        current[(hash & 0x7fffffff) % current.length].queue.put(task);
+    }
+
+    public int size() {
+        return lanes.length;
+    }
+
+    /**
+     * Request a new lane count; takes effect on the next submit
+     */
+    public void resize(int laneCount) {
+        requestedLanes = Math.max(1, laneCount);
+    }
+
+    /**
+     * Drain queued work and stop all lanes
+     */
+    public void shutdown(long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        Lane[] current = lanes;
+        for (Lane lane : current) {
+            lane.stopping = true;
+        }
+        for (Lane lane : current) {
+            lane.thread.join(Math.max(1L, deadline - System.currentTimeMillis()));
+            if (lane.thread.isAlive()) {
+                lane.thread.interrupt();
+            }
+        }
+    }
+
+    private synchronized Lane[] swapLanes() {
+        Lane[] old = lanes;
+        Lane[] created = startLanes(requestedLanes);
+        lanes = created;
+        for (Lane lane : old) {
+            lane.stopping = true;
+        }
+        System.out.println(name + " lanes resized to " + created.length);
+        return created;
+    }
+
+    private Lane[] startLanes(int count) {
+        Lane[] created = new Lane[count];
+        for (int i = 0; i < count; i++) {
+            created[i] = new Lane(name + "-lane-" + generation + "-" + i, queueCapacity);
+            created[i].thread.start();
+        }
+        generation++;
+        return created;
+    }
+
+    private static final class Lane implements Runnable {
+        final BlockingQueue<Runnable> queue;
+        final Thread thread;
+        volatile boolean stopping;
+
+        Lane(String threadName, int capacity) {
+            this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+            this.thread = new Thread(this, threadName);
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Runnable task;
+                try {
+                    task = queue.poll(200, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (task == null) {
+                    if (stopping) {
+                        return;
+                    }
+                    continue;
+                }
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    System.err.println("Lane task failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+}
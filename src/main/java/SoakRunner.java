@@ -0,0 +1,190 @@
+import org.eclipse.paho.mqttv5.common.MqttMessage;
+import org.eclipse.paho.mqttv5.common.packet.MqttProperties;
+import org.eclipse.paho.mqttv5.common.packet.UserProperty;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Soak test for the subscriber: sustained synthetic load for hours with
+ * bounded-memory assertions.
+ *
+ * Usage: SoakRunner [--duration 4h] [--rate 1000] [--sensors 1000]
+ *                   [--churn 0] [--validate] [--console]
+ *
+ * Messages go straight into MQTT5Subscriber's message entry point, so no
+ * broker is needed. Local stand-ins replace the other externals: console
+ * output is counted and discarded (--console keeps it), and without
+ * --validate every message carries a trusted-publisher mark with
+ * trust.validate.sample.rate=0, so no schema registry is needed. With
+ * --validate the configured registry is used for full validation.
+ * Every --churn messages one sensor is retired and a new one appears,
+ * to catch per-sensor state that is never released.
+ *
+ * A {@link MemorySampler} samples every soak.sample.interval.ms; the run
+ * exits with status 1 when retained memory per message or per sensor, or
+ * the thread count, trends upward after warm-up.
+ */
+public final class SoakRunner {
+
+    /**
+     * Console stand-in: counts bytes instead of writing them
+     */
+    private static final class CountingSink extends OutputStream {
+        final LongAdder bytes = new LongAdder();
+
+        @Override
+        public void write(int b) {
+            bytes.increment();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            bytes.add(len);
+        }
+    }
+
+    private SoakRunner() {}
+
+    public static void main(String[] args) throws Exception {
+        long durationMs = 60 * 60_000L;
+        double rate = 1000;
+        int activeSensors = 1000;
+        long churnEvery = 0;
+        boolean validate = false;
+        boolean console = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--duration": durationMs = parseDuration(args[++i]); break;
+                case "--rate": rate = Double.parseDouble(args[++i]); break;
+                case "--sensors": activeSensors = Integer.parseInt(args[++i]); break;
+                case "--churn": churnEvery = Long.parseLong(args[++i]); break;
+                case "--validate": validate = true; break;
+                case "--console": console = true; break;
+                default:
+                    System.err.println("Unknown argument: " + args[i]);
+                    System.exit(2);
+            }
+        }
+
+        TuningConfig tuning = TuningConfig.get();
+        if (!validate) {
+            // Registry stand-in: trust every (self-marked) message, never call the deserializer
+            tuning.override("trust.key", Long.toHexString(ThreadLocalRandom.current().nextLong()));
+            tuning.override("trust.key.id", "soak");
+            tuning.override("trust.validate.sample.rate", "0");
+        }
+        long sampleIntervalMs = tuning.getLong("soak.sample.interval.ms", 30_000L);
+        MemorySampler sampler = new MemorySampler(tuning.getBoolean("soak.sample.full.gc", true));
+
+        PrintStream realOut = System.out;
+        CountingSink consoleSink = new CountingSink();
+        if (!console) {
+            System.setOut(new PrintStream(consoleSink, false, "UTF-8"));
+        }
+        realOut.println("Soak run: duration=" + durationMs / 1000 + "s rate=" + rate + " msg/s sensors=" +
+                        activeSensors + " churn=" + churnEvery + " validation=" + (validate ? "registry" : "stand-in"));
+
+        MQTT5Subscriber subscriber = new MQTT5Subscriber();
+        TopicStrategy topics = new TopicStrategy();
+        TrustMarker marker = TrustMarker.get();
+        Map<String, Object> serdesHeaders = new HashMap<>();
+        serdesHeaders.put("SCHEMA_ID_STRING", MqttConfig.SCHEMA_ARTIFACT_ID);
+
+        long start = System.nanoTime();
+        long end = start + durationMs * 1_000_000L;
+        long intervalNanos = (long) (1_000_000_000L / Math.max(0.001, rate));
+        long nextSend = start;
+        long nextSample = start + sampleIntervalMs * 1_000_000L;
+        long messages = 0;
+        long sensorBase = 0; // first active sensor number; grows with churn
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        while (System.nanoTime() < end) {
+            long now = System.nanoTime();
+            if (nextSend > now) {
+                LockSupport.parkNanos(nextSend - now);
+            }
+            nextSend += intervalNanos;
+
+            messages++;
+            if (churnEvery > 0 && messages % churnEvery == 0) {
+                sensorBase++;
+            }
+            String sensorId = "soak-sensor-" + (sensorBase + random.nextInt(activeSensors));
+            String json = "{\"sensorId\":\"" + sensorId + "\",\"temperature\":" +
+                Math.round((15 + random.nextDouble() * 20) * 100) / 100.0 +
+                ",\"timestamp\":\"" + Instant.now() + "\"}";
+            byte[] payload = json.getBytes(StandardCharsets.UTF_8);
+
+            MqttProperties properties = new MqttProperties();
+            properties.setPayloadFormat(true);
+            properties.setContentType("application/json");
+            properties.setCorrelationData(("soak-" + messages).getBytes(StandardCharsets.UTF_8));
+            properties.setResponseTopic(MqttConfig.RESPONSE_TOPIC + "/soak-publisher");
+            List<UserProperty> userProperties = properties.getUserProperties();
+            userProperties.add(new UserProperty("messageId", String.valueOf(messages)));
+            userProperties.add(new UserProperty("clientId", "soak-publisher"));
+            userProperties.add(new UserProperty("SCHEMA_ID_STRING", MqttConfig.SCHEMA_ARTIFACT_ID));
+            if (marker != null) {
+                marker.stamp(serdesHeaders, payload, userProperties);
+            }
+            payload = PayloadCodec.get().encode(payload, properties);
+
+            MqttMessage message = new MqttMessage(payload);
+            message.setQos(TuningConfig.get().publishQos());
+            message.setProperties(properties);
+            subscriber.onMessage(topics.topicFor(sensorId), message);
+
+            if (System.nanoTime() >= nextSample) {
+                MemorySampler.Sample sample = sampler.sample(messages, sensorBase + activeSensors);
+                realOut.println("[SOAK] " + sample + " console=" + consoleSink.bytes.sum() / 1024 + "KB");
+                nextSample = System.nanoTime() + sampleIntervalMs * 1_000_000L;
+            }
+        }
+
+        realOut.println("[SOAK] final " + sampler.sample(messages, sensorBase + activeSensors) +
+                        " console=" + consoleSink.bytes.sum() / 1024 + "KB");
+        subscriber.disconnect();
+        System.setOut(realOut);
+
+        List<String> failures = sampler.verdict(
+            tuning.getDouble("soak.warmup.fraction", 0.25),
+            tuning.getDouble("soak.max.bytes.per.message", 1.0),
+            tuning.getDouble("soak.max.bytes.per.sensor", 1024.0),
+            tuning.getInt("soak.max.thread.growth", 2));
+        if (failures.isEmpty()) {
+            realOut.println("Soak PASSED: " + messages + " messages, memory and threads steady");
+            System.exit(0);
+        }
+        for (String failure : failures) {
+            System.err.println("Soak FAILED: " + failure);
+        }
+        System.exit(1);
+    }
+
+    /**
+     * Parse 90s, 30m, 4h or plain milliseconds
+     */
+    private static long parseDuration(String value) {
+        String v = value.trim().toLowerCase();
+        if (v.endsWith("h")) {
+            return Long.parseLong(v.substring(0, v.length() - 1)) * 3_600_000L;
+        }
+        if (v.endsWith("m")) {
+            return Long.parseLong(v.substring(0, v.length() - 1)) * 60_000L;
+        }
+        if (v.endsWith("s")) {
+            return Long.parseLong(v.substring(0, v.length() - 1)) * 1000L;
+        }
+        return Long.parseLong(v);
+    }
+}
@@ -0,0 +1,269 @@
+import org.eclipse.paho.mqttv5.client.IMqttToken;
+import org.eclipse.paho.mqttv5.client.MqttAsyncClient;
+import org.eclipse.paho.mqttv5.common.MqttException;
+import org.eclipse.paho.mqttv5.common.MqttSubscription;
+import org.eclipse.paho.mqttv5.common.packet.MqttProperties;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Multi-filter subscriptions with per-filter schema artifact and handler.
+ *
+ * Routes come from the "routes" tuning key (comma-separated names, applied at
+ * startup) with routes.<name>.filter, .schema, .handler and .qos. Each route
+ * is subscribed on its own with MQTT5 Subscription Identifier = its position
+ * (1-based), so an incoming message is routed by an array lookup on the
+ * identifier the broker echoes back. Only when the broker omits it (no
+ * identifier support, or messages fed in without a broker) is the topic
+ * matched against a trie of the filters, which costs one step per topic
+ * level however many filters there are. When several routes match, the one
+ * listed first wins. Without "routes", a single route subscribes to
+ * {@link TopicStrategy#subscriptionFilter()} as before.
+ *
+ * A route with routes.<name>.schema only accepts messages whose
+ * SCHEMA_ID_STRING names that artifact (or that carry none); others fail
+ * validation as schema_mismatch. Without it the default artifact is only
+ * the fallback for messages that do not declare one.
+ */
+public final class SubscriptionRouter {
+
+    /**
+     * One subscribed filter and what to do with its messages
+     */
+    public static final class Route {
+        public final int id;
+        public final String name;
+        public final String filter;          // as subscribed, may carry a $share/<group>/ prefix
+        public final String schemaArtifactId;
+        // Set by routes.<name>.schema: messages declaring another artifact are rejected
+        public final boolean schemaEnforced;
+        public final MessagePipeline.Stage handler; // null: common stages and sinks only
+        public final int qos;
+
+        Route(int id, String name, String filter, String schemaArtifactId, boolean schemaEnforced,
+              MessagePipeline.Stage handler, int qos) {
+            this.id = id;
+            this.name = name;
+            this.filter = filter;
+            this.schemaArtifactId = schemaArtifactId;
+            this.schemaEnforced = schemaEnforced;
+            this.handler = handler;
+            this.qos = qos;
+        }
+    }
+
+    /**
+     * Trie level: exact children, '+' child, and the route ending here or in '#'
+     */
+    private static final class Node {
+        final Map<String, Node> children = new HashMap<>();
+        Node single;
+        Route exact;
+        Route multi;
+    }
+
+    private final Route[] byId;          // index = subscription identifier
+    private final Node root = new Node();
+    private final LongAdder byIdentifier = new LongAdder();
+    private final LongAdder byTopic = new LongAdder();
+    private final LongAdder unrouted = new LongAdder();
+
+    public SubscriptionRouter(List<Route> routes) {
+        this.byId = new Route[routes.size() + 1];
+        for (Route route : routes) {
+            if (route.id <= 0 || route.id >= byId.length || byId[route.id] != null) {
+                throw new IllegalArgumentException("Route identifiers must be 1.." + routes.size() + ": " + route.name);
+            }
+            byId[route.id] = route;
+            index(route);
+        }
+    }
+
+    /**
+     * Build from tuning settings; handler names are looked up among the pipeline's stages and sinks
+     */
+    public static SubscriptionRouter fromTuning(Map<String, MessagePipeline.Stage> handlers) {
+        TuningConfig tuning = TuningConfig.get();
+        String schema = MqttConfig.SCHEMA_ARTIFACT_ID;
+        int qos = tuning.subscribeQos();
+        List<Route> routes = new ArrayList<>();
+        for (String entry : tuning.getString("routes", "").split(",")) {
+            String name = entry.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            String filter = tuning.getString("routes." + name + ".filter", "").trim();
+            if (filter.isEmpty()) {
+                System.err.println("Ignoring route without a filter: " + name);
+                continue;
+            }
+            String handlerName = tuning.getString("routes." + name + ".handler", "").trim();
+            MessagePipeline.Stage handler = handlerName.isEmpty() ? null : handlers.get(handlerName);
+            if (handler == null && !handlerName.isEmpty()) {
+                System.err.println("Ignoring unknown handler for route " + name + ": " + handlerName);
+            }
+            String routeSchema = tuning.getString("routes." + name + ".schema", "");
+            routes.add(new Route(routes.size() + 1, name, TopicStrategy.shared(filter),
+                routeSchema.isEmpty() ? schema : routeSchema, !routeSchema.isEmpty(), handler,
+                tuning.getInt("routes." + name + ".qos", qos)));
+        }
+        if (routes.isEmpty()) {
+            routes.add(new Route(1, "default", TopicStrategy.subscriptionFilter(), schema, false, null, qos));
+        }
+        return new SubscriptionRouter(routes);
+    }
+
+    public List<Route> routes() {
+        List<Route> routes = new ArrayList<>(byId.length - 1);
+        for (int id = 1; id < byId.length; id++) {
+            routes.add(byId[id]);
+        }
+        return routes;
+    }
+
+    public boolean hasHandlers() {
+        for (int id = 1; id < byId.length; id++) {
+            if (byId[id].handler != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Route for a received message, or null if no subscribed filter matches
+     */
+    public Route route(String topic, MqttProperties properties) {
+        List<Integer> identifiers = properties != null ? properties.getSubscriptionIdentifiers() : null;
+        if (identifiers != null && !identifiers.isEmpty()) {
+            Route best = null;
+            for (Integer id : identifiers) {
+                if (id != null && id > 0 && id < byId.length && (best == null || id < best.id)) {
+                    best = byId[id];
+                }
+            }
+            if (best != null) {
+                byIdentifier.increment();
+                return best;
+            }
+        }
+        Route match = match(topic);
+        if (match != null) {
+            byTopic.increment();
+        } else {
+            unrouted.increment();
+        }
+        return match;
+    }
+
+    /**
+     * Topic-trie lookup: one step per topic level, lowest route id among the matches
+     */
+    Route match(String topic) {
+        String[] levels = topic.split("/", -1);
+        // Wildcards at the first level do not match $-topics ($SYS/...)
+        return match(root, levels, 0, !topic.startsWith("$"), null);
+    }
+
+    private static Route match(Node node, String[] levels, int depth, boolean wildcards, Route best) {
+        if (wildcards && node.multi != null) {
+            best = lower(best, node.multi); // '#' also matches the parent level itself
+        }
+        if (depth == levels.length) {
+            return lower(best, node.exact);
+        }
+        Node child = node.children.get(levels[depth]);
+        if (child != null) {
+            best = match(child, levels, depth + 1, true, best);
+        }
+        if (wildcards && node.single != null) {
+            best = match(node.single, levels, depth + 1, true, best);
+        }
+        return best;
+    }
+
+    private static Route lower(Route a, Route b) {
+        if (a == null) {
+            return b;
+        }
+        return b == null || a.id < b.id ? a : b;
+    }
+
+    private void index(Route route) {
+        Node node = root;
+        for (String level : unshared(route.filter).split("/", -1)) {
+            if ("#".equals(level)) {
+                node.multi = lower(node.multi, route);
+                return;
+            }
+            if ("+".equals(level)) {
+                if (node.single == null) {
+                    node.single = new Node();
+                }
+                node = node.single;
+            } else {
+                node = node.children.computeIfAbsent(level, k -> new Node());
+            }
+        }
+        node.exact = lower(node.exact, route);
+    }
+
+    /**
+     * Topic filter without a $share/<group>/ prefix
+     */
+    private static String unshared(String filter) {
+        if (!filter.startsWith("$share/")) {
+            return filter;
+        }
+        int slash = filter.indexOf('/', "$share/".length());
+        return slash < 0 ? filter : filter.substring(slash + 1);
+    }
+
+    /**
+     * One SUBSCRIBE per route (a SUBSCRIBE carries a single identifier), all sent before waiting
+     */
+    public void subscribe(MqttAsyncClient client, boolean identifiersAvailable, long timeoutMs) throws MqttException {
+        List<IMqttToken> tokens = new ArrayList<>(byId.length - 1);
+        for (int id = 1; id < byId.length; id++) {
+            Route route = byId[id];
+            MqttProperties properties = new MqttProperties();
+            if (identifiersAvailable) {
+                properties.setSubscriptionIdentifier(route.id);
+            }
+            tokens.add(client.subscribe(new MqttSubscription[] {new MqttSubscription(route.filter, route.qos)},
+                null, null, properties));
+        }
+        for (IMqttToken token : tokens) {
+            token.waitForCompletion(timeoutMs);
+        }
+        if (!identifiersAvailable) {
+            System.out.println("Broker does not support subscription identifiers; routing by topic");
+        }
+    }
+
+    public void unsubscribe(MqttAsyncClient client, long timeoutMs) throws MqttException {
+        String[] filters = new String[byId.length - 1];
+        for (int id = 1; id < byId.length; id++) {
+            filters[id - 1] = byId[id].filter;
+        }
+        client.unsubscribe(filters).waitForCompletion(timeoutMs);
+    }
+
+    public String describe() {
+        StringBuilder out = new StringBuilder();
+        for (int id = 1; id < byId.length; id++) {
+            Route route = byId[id];
+            out.append(String.format("%n   [%d] %s: %s -> %s", route.id, route.name, route.filter, route.schemaArtifactId));
+        }
+        return out.toString();
+    }
+
+    public void printStats() {
+        System.out.println("Routing: " + byIdentifier.sum() + " by subscription identifier, " +
+            byTopic.sum() + " by topic match, " + unrouted.sum() + " unrouted");
+    }
+}
@@ -0,0 +1,95 @@
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps sensor readings to a topic hierarchy so the broker and subscribers
+ * can partition work by sensor.
+ *
+ * The template (tuning key "topic.template") may reference {base}, {region}
+ * and {sensorId}; the default is {base}/{region}/{sensorId}, e.g.
+ * test/mqtt5/messages/us-east/sensor-001. Regions come from
+ * "topic.region.map" (sensorId:region pairs, comma separated) with
+ * "topic.region.default" for unmapped sensors. Resolved topics are cached
+ * per sensor (up to 100,000 sensors) and the cache is cleared when the
+ * tuning file changes.
+ */
+public final class TopicStrategy {
+
+    public static final String DEFAULT_TEMPLATE = "{base}/{region}/{sensorId}";
+    public static final String DEFAULT_REGION = "default";
+
+    private static final int MAX_CACHED_TOPICS = 100_000;
+
+    private final Map<String, String> topicCache = new ConcurrentHashMap<>();
+    private volatile String template;
+    private volatile String defaultRegion;
+    private volatile Map<String, String> regions;
+
+    public TopicStrategy() {
+        load();
+        TuningConfig.get().addListener(this::load);
+    }
+
+    /**
+     * Topic for a reading from the given sensor
+     */
+    public String topicFor(String sensorId) {
+        if (sensorId == null) {
+            return MqttConfig.TOPIC_BASE;
+        }
+        if (topicCache.size() >= MAX_CACHED_TOPICS) {
+            topicCache.clear(); // sensor churn must not grow the cache without bound
+        }
+        return topicCache.computeIfAbsent(sensorId, this::resolve);
+    }
+
+    /**
+     * Subscription filter matching every topic this strategy can produce.
+     * MQTT's multi-level wildcard also matches the base topic itself.
+     */
+    public static String subscriptionFilter() {
+        return shared(MqttConfig.TOPIC_BASE + "/#");
+    }
+
+    /**
+     * The filter as a shared subscription when subscribe.share.group is set
+     */
+    public static String shared(String filter) {
+        String shareGroup = TuningConfig.get().getString("subscribe.share.group", "");
+        return shareGroup.isEmpty() || filter.startsWith("$share/") ? filter : "$share/" + shareGroup + "/" + filter;
+    }
+
+    private String resolve(String sensorId) {
+        String region = regions.getOrDefault(sensorId, defaultRegion);
+        return template
+            .replace("{base}", MqttConfig.TOPIC_BASE)
+            .replace("{region}", sanitizeLevel(region))
+            .replace("{sensorId}", sanitizeLevel(sensorId));
+    }
+
+    private void load() {
+        TuningConfig tuning = TuningConfig.get();
+        template = tuning.getString("topic.template", DEFAULT_TEMPLATE);
+        defaultRegion = tuning.getString("topic.region.default", DEFAULT_REGION);
+        Map<String, String> parsed = new HashMap<>();
+        for (String pair : tuning.getString("topic.region.map", "").split(",")) {
+            int colon = pair.indexOf(':');
+            if (colon > 0) {
+                parsed.put(pair.substring(0, colon).trim(), pair.substring(colon + 1).trim());
+            }
+        }
+        regions = parsed;
+        topicCache.clear();
+    }
+
+    /**
+     * Topic levels must not contain separators or wildcards
+     */
+    private static String sanitizeLevel(String level) {
+        if (level.isEmpty()) {
+            return "_";
+        }
+        return level.replace('/', '_').replace('+', '_').replace('#', '_');
+    }
+}
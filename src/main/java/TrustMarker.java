@@ -0,0 +1,155 @@
+import org.eclipse.paho.mqttv5.common.packet.UserProperty;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * "Validated against this schema" marker shared by trusted publishers and
+ * the subscriber, so a message is not fully schema-validated twice.
+ *
+ * After a successful validating serialization the publisher stamps the
+ * "validation-mark" user property with keyId:HMAC-SHA256 over the SERDES
+ * schema headers (sorted, so schema ID and version are both covered) and
+ * the serialized payload before compression. The subscriber re-computes
+ * the HMAC: verified messages are fully validated only for a sample
+ * (trust.validate.sample.rate, re-read per message); unmarked or
+ * mismatched messages are always validated.
+ *
+ * The shared key comes from trust.key (normally the MQTT5_TRUST_KEY
+ * environment variable); without one, nothing is stamped or trusted.
+ */
+public final class TrustMarker {
+
+    public static final String PROPERTY = "validation-mark";
+    private static final String ALGORITHM = "HmacSHA256";
+
+    /**
+     * Outcome of checking a received message's mark
+     */
+    public enum Verdict { UNMARKED, MISMATCH, TRUSTED }
+
+    private static volatile TrustMarker instance;
+
+    private final String keyId;
+    private final SecretKeySpec key;
+    private final ThreadLocal<Mac> macs;
+
+    private final LongAdder trusted = new LongAdder();
+    private final LongAdder sampled = new LongAdder();
+    private final LongAdder unmarked = new LongAdder();
+    private final LongAdder mismatched = new LongAdder();
+
+    TrustMarker(String keyId, byte[] secret) {
+        this.keyId = keyId;
+        this.key = new SecretKeySpec(secret, ALGORITHM);
+        this.macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(ALGORITHM);
+                mac.init(key);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HMAC-SHA256 unavailable", e);
+            }
+        });
+    }
+
+    /**
+     * Marker configured from tuning (read once), or null when trust.key is not set
+     */
+    public static TrustMarker get() {
+        TrustMarker marker = instance;
+        if (marker == null) {
+            synchronized (TrustMarker.class) {
+                marker = instance;
+                if (marker == null) {
+                    String secret = TuningConfig.get().getString("trust.key", "");
+                    if (secret.isEmpty()) {
+                        return null;
+                    }
+                    marker = new TrustMarker(TuningConfig.get().getString("trust.key.id", "default"),
+                        secret.getBytes(StandardCharsets.UTF_8));
+                    instance = marker;
+                }
+            }
+        }
+        return marker;
+    }
+
+    /**
+     * Mark a payload that has just passed schema validation in the serializer
+     */
+    public void stamp(Map<String, Object> serdesHeaders, byte[] payload, List<UserProperty> userProperties) {
+        userProperties.add(new UserProperty(PROPERTY, keyId + ":" +
+            Base64.getEncoder().encodeToString(mac(serdesHeaders, payload))));
+    }
+
+    /**
+     * Check the mark of a received message against its SERDES headers and decompressed payload
+     */
+    public Verdict verify(Map<String, Object> serdesHeaders, byte[] payload, String mark) {
+        if (mark == null) {
+            unmarked.increment();
+            return Verdict.UNMARKED;
+        }
+        int colon = mark.indexOf(':');
+        boolean ok = false;
+        if (colon > 0 && keyId.equals(mark.substring(0, colon))) {
+            try {
+                byte[] received = Base64.getDecoder().decode(mark.substring(colon + 1));
+                ok = MessageDigest.isEqual(received, mac(serdesHeaders, payload));
+            } catch (IllegalArgumentException e) {
+                ok = false;
+            }
+        }
+        if (!ok) {
+            mismatched.increment();
+            return Verdict.MISMATCH;
+        }
+        return Verdict.TRUSTED;
+    }
+
+    /**
+     * Whether a trusted message should still be fully validated (the safety-net sample)
+     */
+    public boolean sampleForValidation() {
+        double rate = TuningConfig.get().getDouble("trust.validate.sample.rate", 0.05);
+        if (rate >= 1.0 || ThreadLocalRandom.current().nextDouble() < rate) {
+            sampled.increment();
+            return true;
+        }
+        trusted.increment();
+        return false;
+    }
+
+    public void printStats() {
+        System.out.println("Trusted publisher marks: " + trusted.sum() + " skipped, " + sampled.sum() +
+            " sampled, " + unmarked.sum() + " unmarked, " + mismatched.sum() + " mismatched");
+    }
+
+    private byte[] mac(Map<String, Object> serdesHeaders, byte[] payload) {
+        Mac mac = macs.get();
+        for (Map.Entry<String, Object> e : new TreeMap<>(serdesHeaders).entrySet()) {
+            // Only the headers the subscriber hands to SERDES, as they appear on the wire
+            if (!SerdesSupport.isSerdesHeader(e.getKey())) {
+                continue;
+            }
+            Object value = e.getValue();
+            mac.update(e.getKey().getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) '=');
+            mac.update((value == null ? "" : value.toString()).getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) '\n');
+        }
+        mac.update((byte) 0);
+        mac.update(payload);
+        return mac.doFinal();
+    }
+}
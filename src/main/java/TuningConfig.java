@@ -0,0 +1,275 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runtime-tunable performance settings.
+ *
+ * Values are resolved in this order: in-process override, environment
+ * variable, tuning file, then the defaults in MqttConfig. The tuning file is a plain properties
+ * file (see mqtt5-tuning.properties.example); its location comes from the
+ * system property "mqtt5.tuning.file", the MQTT5_TUNING_FILE environment
+ * variable, or ./mqtt5-tuning.properties. Each key can be overridden with an
+ * environment variable named MQTT5_ + the key upper-cased with dots replaced
+ * by underscores (e.g. publish.qos -> MQTT5_PUBLISH_QOS).
+ *
+ * Once {@link #startWatching()} is called the file is polled for changes.
+ * Live settings (publish QoS and interval, success sampling, worker count,
+ * schema validation) take effect immediately; connection-bound settings
+ * (subscribe QoS, receive maximum, max packet size) take effect on the next
+ * connect so the current connection is never dropped.
+ */
+public final class TuningConfig {
+
+    public static final String FILE_PROPERTY = "mqtt5.tuning.file";
+    public static final String FILE_ENV = "MQTT5_TUNING_FILE";
+    private static final String DEFAULT_FILE = "mqtt5-tuning.properties";
+    private static final long WATCH_INTERVAL_MS = 2000;
+
+    private static final TuningConfig INSTANCE = new TuningConfig(resolvePath());
+
+    private final Path file;
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+    private ScheduledExecutorService watcher;
+    private long lastModified = -1L;
+    private volatile Properties current = new Properties();
+    // In-process values pinned by embedded runs (SoakRunner); win over environment and file
+    private final Map<String, String> overrides = new ConcurrentHashMap<>();
+
+    // Connection-bound settings (applied on next connect)
+    private volatile int subscribeQos;
+    private volatile int receiveMaximum;
+    private volatile long maxPacketSize;
+
+    // Live settings
+    private volatile int publishQos;
+    private volatile long publishIntervalMs;
+    private volatile boolean validateSchema;
+    private volatile double successSampleRate;
+    private volatile int subscriberWorkers;
+
+    private TuningConfig(Path file) {
+        this.file = file;
+        reload(false);
+    }
+
+    public static TuningConfig get() {
+        return INSTANCE;
+    }
+
+    public int publishQos() { return publishQos; }
+    public int subscribeQos() { return subscribeQos; }
+    public int receiveMaximum() { return receiveMaximum; }
+    public long maxPacketSize() { return maxPacketSize; }
+    public long publishIntervalMs() { return publishIntervalMs; }
+    public boolean validateSchema() { return validateSchema; }
+    public double successSampleRate() { return successSampleRate; }
+    public int subscriberWorkers() { return subscriberWorkers; }
+
+    /**
+     * Register a callback invoked after every reload that changed a value.
+     */
+    public void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Start polling the tuning file for changes (idempotent).
+     */
+    public synchronized void startWatching() {
+        if (watcher != null) {
+            return;
+        }
+        watcher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "tuning-config-watcher");
+            t.setDaemon(true);
+            return t;
+        });
+        watcher.scheduleWithFixedDelay(() -> {
+            try {
+                if (modifiedTime() != lastModified) {
+                    reload(true);
+                }
+            } catch (Exception e) {
+                System.err.println("Tuning reload failed: " + e.getMessage());
+            }
+        }, WATCH_INTERVAL_MS, WATCH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        System.out.println("Watching tuning file for changes: " + file.toAbsolutePath());
+    }
+
+    public synchronized void stopWatching() {
+        if (watcher != null) {
+            watcher.shutdownNow();
+            watcher = null;
+        }
+    }
+
+    /**
+     * Pin a value for this process, ahead of the environment and tuning file.
+     * Components that read a key once only see overrides made before they start.
+     */
+    public void override(String key, String value) {
+        overrides.put(key, value);
+        reload(false);
+    }
+
+    /**
+     * Raw lookup for settings owned by other components.
+     * Returns the environment override, the file value or the given default;
+     * a blank value counts as unset.
+     */
+    public String getString(String key, String defaultValue) {
+        String pinned = overrides.get(key);
+        if (pinned != null) {
+            return pinned;
+        }
+        String env = System.getenv(envName(key));
+        if (env != null && !env.isEmpty()) {
+            return env.trim();
+        }
+        String value = current.getProperty(key);
+        return value != null && !value.trim().isEmpty() ? value.trim() : defaultValue;
+    }
+
+    public int getInt(String key, int defaultValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            System.err.println("Ignoring invalid value for " + key + ": " + value);
+            return defaultValue;
+        }
+    }
+
+    public long getLong(String key, long defaultValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            System.err.println("Ignoring invalid value for " + key + ": " + value);
+            return defaultValue;
+        }
+    }
+
+    public double getDouble(String key, double defaultValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            System.err.println("Ignoring invalid value for " + key + ": " + value);
+            return defaultValue;
+        }
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        String value = getString(key, null);
+        return value == null ? defaultValue : Boolean.parseBoolean(value);
+    }
+
+    private synchronized void reload(boolean announce) {
+        long modified = modifiedTime();
+        Properties props = new Properties();
+        if (modified != -1L) {
+            try (InputStream in = Files.newInputStream(file)) {
+                props.load(in);
+            } catch (IOException e) {
+                System.err.println("Failed to read tuning file " + file + ": " + e.getMessage());
+                return;
+            }
+        }
+        lastModified = modified;
+        Properties previous = current;
+        current = props;
+
+        int oldSubscribeQos = subscribeQos;
+        int oldReceiveMaximum = receiveMaximum;
+        long oldMaxPacketSize = maxPacketSize;
+        String before = describe();
+
+        subscribeQos = clampQos(getInt("subscribe.qos", MqttConfig.SUBSCRIBE_QOS));
+        receiveMaximum = Math.max(1, Math.min(65535, getInt("receive.maximum", MqttConfig.RECEIVE_MAXIMUM)));
+        maxPacketSize = Math.max(1L, getLong("max.packet.size", MqttConfig.MAX_PACKET_SIZE));
+        publishQos = clampQos(getInt("publish.qos", MqttConfig.PUBLISH_QOS));
+        publishIntervalMs = Math.max(0L, getLong("publish.interval.ms", MqttConfig.PUBLISH_INTERVAL_MS));
+        validateSchema = getBoolean("validation.enabled", MqttConfig.JSON_VALIDATE_SCHEMA);
+        successSampleRate = Math.max(0.0, Math.min(1.0, getDouble("logging.success.sample.rate", MqttConfig.SUCCESS_LOG_SAMPLE_RATE)));
+        subscriberWorkers = Math.max(1, getInt("subscriber.workers", MqttConfig.SUBSCRIBER_WORKERS));
+
+        // Listeners also read keys outside describe(), so any file change counts
+        if (!announce || (before.equals(describe()) && props.equals(previous))) {
+            return;
+        }
+        System.out.println("Tuning reloaded: " + describe());
+        if (oldSubscribeQos != subscribeQos || oldReceiveMaximum != receiveMaximum
+                || oldMaxPacketSize != maxPacketSize) {
+            System.out.println("   subscribe.qos, receive.maximum and max.packet.size apply on next connect");
+        }
+        for (Runnable listener : listeners) {
+            try {
+                listener.run();
+            } catch (Exception e) {
+                System.err.println("Tuning listener failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * One-line summary of the effective settings.
+     */
+    public String describe() {
+        return "publish.qos=" + publishQos
+            + ", publish.interval.ms=" + publishIntervalMs
+            + ", subscribe.qos=" + subscribeQos
+            + ", receive.maximum=" + receiveMaximum
+            + ", max.packet.size=" + maxPacketSize
+            + ", validation.enabled=" + validateSchema
+            + ", logging.success.sample.rate=" + successSampleRate
+            + ", subscriber.workers=" + subscriberWorkers;
+    }
+
+    private long modifiedTime() {
+        try {
+            return Files.exists(file) ? Files.getLastModifiedTime(file).toMillis() : -1L;
+        } catch (IOException e) {
+            return -1L;
+        }
+    }
+
+    private static int clampQos(int qos) {
+        return Math.max(0, Math.min(2, qos));
+    }
+
+    private static String envName(String key) {
+        return "MQTT5_" + key.toUpperCase().replace('.', '_');
+    }
+
+    private static Path resolvePath() {
+        String path = System.getProperty(FILE_PROPERTY);
+        if (path == null || path.isEmpty()) {
+            path = System.getenv(FILE_ENV);
+        }
+        if (path == null || path.isEmpty()) {
+            path = DEFAULT_FILE;
+        }
+        return Paths.get(path);
+    }
+}
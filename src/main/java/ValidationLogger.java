@@ -16,6 +16,8 @@ public class ValidationLogger {
     private static final ObjectMapper JSON = new ObjectMapper();
     private static final DateTimeFormatter ISO_FORMATTER = 
         DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").withZone(ZoneOffset.UTC);
+    // Disable when the Elasticsearch sink replaces the Filebeat pipeline
+    private static final boolean STDOUT_ENABLED = TuningConfig.get().getBoolean("logging.stdout.enabled", true);
     
     // Event types for filtering and aggregation in Kibana
     public enum EventType {
@@ -35,7 +37,8 @@ public class ValidationLogger {
     
     /**
      * Log a validation event in structured JSON format
-     * This goes to stdout and can be collected by Filebeat/Fluentd
+     * This goes to stdout and can be collected by Filebeat/Fluentd,
+     * and/or straight to Elasticsearch via ElasticsearchBulkSink
      */
     public static void logValidationEvent(
             EventType eventType,
@@ -49,6 +52,44 @@ public class ValidationLogger {
             String brokerUrl,
             String sensorId,
             Double temperature) {
+        logEvent(eventType, clientType, messageId, schemaId, topic, success, errorMessage, null,
+                 clientId, brokerUrl, sensorId, temperature);
+    }
+    
+    /**
+     * Log a validation event, classifying the error from the exception itself
+     * (keyword, JSON pointer and schema path when the exception exposes them)
+     */
+    public static void logValidationEvent(
+            EventType eventType,
+            ClientType clientType,
+            String messageId,
+            String schemaId,
+            String topic,
+            Throwable error,
+            String clientId,
+            String brokerUrl,
+            String sensorId,
+            Double temperature) {
+        // Many exceptions (NPE, wrapped causes) have no message; keep the type at least
+        String errorMessage = error.getMessage() != null ? error.getMessage() : error.toString();
+        logEvent(eventType, clientType, messageId, schemaId, topic, false, errorMessage, error,
+                 clientId, brokerUrl, sensorId, temperature);
+    }
+    
+    private static void logEvent(
+            EventType eventType,
+            ClientType clientType,
+            String messageId,
+            String schemaId,
+            String topic,
+            boolean success,
+            String errorMessage,
+            Throwable error,
+            String clientId,
+            String brokerUrl,
+            String sensorId,
+            Double temperature) {
         
         try {
             ObjectNode event = JSON.createObjectNode();
@@ -78,13 +119,44 @@ public class ValidationLogger {
             }
             
             // Error details (if failure)
-            if (!success && errorMessage != null) {
-                event.put("error_message", errorMessage);
-                event.put("error_category", categorizeError(errorMessage));
+            if (!success && (errorMessage != null || error != null)) {
+                ErrorClassifier.Classification classification = error != null
+                    ? ErrorClassifier.get().classify(error)
+                    : ErrorClassifier.get().classify(errorMessage);
+                event.put("error_message", errorMessage != null ? errorMessage : error.toString());
+                event.put("error_category", classification.code);
+                if (classification.keyword != null) {
+                    event.put("error_keyword", classification.keyword);
+                }
+                if (classification.pointer != null) {
+                    event.put("error_pointer", classification.pointer);
+                }
+                if (classification.schemaPath != null) {
+                    event.put("error_schema_path", classification.schemaPath);
+                }
             }
             
             // Output as single-line JSON (required for log shippers)
-            System.out.println("[VALIDATION_EVENT] " + JSON.writeValueAsString(event));
+            PipelineEvents.LogWrite writeEvent = new PipelineEvents.LogWrite();
+            writeEvent.begin();
+            String json = JSON.writeValueAsString(event);
+            if (STDOUT_ENABLED) {
+                System.out.println("[VALIDATION_EVENT] " + json);
+            }
+            
+            // Optional direct Elasticsearch _bulk sink (es.sink.enabled)
+            ElasticsearchBulkSink sink = ElasticsearchBulkSink.get();
+            if (sink != null) {
+                sink.enqueue(event.get("@timestamp").asText(), json);
+            }
+            writeEvent.end();
+            if (writeEvent.shouldCommit()) {
+                writeEvent.topic = topic;
+                writeEvent.schemaId = schemaId;
+                writeEvent.payloadSize = json.length();
+                writeEvent.success = success;
+                writeEvent.commit();
+            }
             
         } catch (Exception e) {
             System.err.println("Failed to log validation event: " + e.getMessage());
@@ -98,7 +170,7 @@ public class ValidationLogger {
             String messageId,
             String schemaId,
             String topic,
-            String errorMessage,
+            Throwable error,
             String clientId,
             String sensorId,
             Double temperature) {
@@ -109,8 +181,7 @@ public class ValidationLogger {
             messageId,
             schemaId,
             topic,
-            false,
-            errorMessage,
+            error,
             clientId,
             MqttConfig.BROKER_URL,
             sensorId,
@@ -125,7 +196,7 @@ public class ValidationLogger {
             String messageId,
             String schemaId,
             String topic,
-            String errorMessage,
+            Throwable error,
             String clientId,
             String sensorId) {
         
@@ -135,8 +206,7 @@ public class ValidationLogger {
             messageId,
             schemaId,
             topic,
-            false,
-            errorMessage,
+            error,
             clientId,
             MqttConfig.BROKER_URL,
             sensorId,
@@ -145,7 +215,7 @@ public class ValidationLogger {
     }
     
     /**
-     * Convenience method for successful validation (sample a percentage)
+     * Convenience method for successful validation (sample a percentage, tunable at runtime)
      */
     public static void logSuccessfulValidation(
             ClientType clientType,
@@ -155,8 +225,8 @@ public class ValidationLogger {
             String clientId,
             String sensorId) {
         
-        // Sample only 5% of successful validations to reduce log volume
-        if (Math.random() < 0.05) {
+        // Sample successful validations to reduce log volume (logging.success.sample.rate)
+        if (Math.random() < TuningConfig.get().successSampleRate()) {
             logValidationEvent(
                 EventType.VALIDATION_SUCCESS,
                 clientType,
@@ -173,28 +243,6 @@ public class ValidationLogger {
         }
     }
     
-    /**
-     * Categorize errors for better filtering in Kibana
-     */
-    private static String categorizeError(String errorMessage) {
-        if (errorMessage == null) return "unknown";
-        
-        String lowerMsg = errorMessage.toLowerCase();
-        if (lowerMsg.contains("required property") || lowerMsg.contains("not found")) {
-            return "missing_field";
-        } else if (lowerMsg.contains("maximum") || lowerMsg.contains("minimum")) {
-            return "value_out_of_range";
-        } else if (lowerMsg.contains("type")) {
-            return "type_mismatch";
-        } else if (lowerMsg.contains("failed to resolve schema")) {
-            return "schema_not_found";
-        } else if (lowerMsg.contains("connection") || lowerMsg.contains("timeout")) {
-            return "connectivity_issue";
-        } else {
-            return "validation_error";
-        }
-    }
-    
     /**
      * Get hostname for identifying the source of logs
      */
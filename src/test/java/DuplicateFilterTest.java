@@ -0,0 +1,97 @@
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DuplicateFilterTest {
+
+    @Test
+    void dropsRepeatedIdsOnly() {
+        DuplicateFilter filter = new DuplicateFilter(10_000, 1e-6, 60_000);
+        assertFalse(filter.isDuplicate("pub-1", "42"));
+        assertTrue(filter.isDuplicate("pub-1", "42"));
+        assertTrue(filter.isDuplicate("pub-1", "42"));
+        assertEquals(3, filter.checkedCount());
+        assertEquals(2, filter.droppedCount());
+    }
+
+    @Test
+    void sameMessageIdFromAnotherPublisherIsNotADuplicate() {
+        DuplicateFilter filter = new DuplicateFilter(10_000, 1e-6, 60_000);
+        assertFalse(filter.isDuplicate("pub-1", "1"));
+        assertFalse(filter.isDuplicate("pub-2", "1"));
+        // The separator keeps ("ab", "c") and ("a", "bc") apart
+        assertFalse(filter.isDuplicate("ab", "c"));
+        assertFalse(filter.isDuplicate("a", "bc"));
+    }
+
+    @Test
+    void falsePositivesStayBelowTheTargetRateAtTheSizedLoad() {
+        // Every check records its ID, so this fills the window exactly to its sizing
+        int ids = 100_000;
+        double rate = 1e-3;
+        DuplicateFilter filter = new DuplicateFilter(ids, rate, 60_000);
+        for (int i = 0; i < ids; i++) {
+            filter.isDuplicate("pub", "id-" + i);
+        }
+        assertEquals(ids, filter.checkedCount());
+        assertTrue(filter.droppedCount() < ids * rate, "false positives: " + filter.droppedCount());
+    }
+
+    @Test
+    void falsePositivesStayBelowTheTargetRateWithBothGenerationsFull() {
+        int ids = 100_000;
+        int fresh = 20_000;
+        double rate = 1e-3;
+        long windowMs = 1000;
+        DuplicateFilter filter = new DuplicateFilter(ids, rate, windowMs, 0);
+        for (int i = 0; i < ids; i++) {
+            filter.isDuplicate("pub", "old-" + i, 0);
+        }
+        // Rotate once so the full generation becomes the previous one, then load the new
+        // one so that the fresh IDs below (which are recorded too) bring it to the sized load
+        for (int i = 0; i < ids - fresh; i++) {
+            filter.isDuplicate("pub", "new-" + i, windowMs);
+        }
+        long dropped = filter.droppedCount();
+        for (int i = 0; i < fresh; i++) {
+            filter.isDuplicate("pub", "fresh-" + i, windowMs);
+        }
+        long falsePositives = filter.droppedCount() - dropped;
+        assertTrue(falsePositives < fresh * rate, "false positives: " + falsePositives);
+    }
+
+    @Test
+    void remembersIdsForOneWindowAndForgetsThemAfterTwo() {
+        long windowMs = 100;
+        DuplicateFilter filter = new DuplicateFilter(1000, 1e-6, windowMs, 0);
+        assertFalse(filter.isDuplicate("pub", "old", 0));
+        assertTrue(filter.isDuplicate("pub", "old", windowMs - 1));
+
+        // Rotated once: "old" is only in the previous generation
+        assertFalse(filter.isDuplicate("pub", "other", windowMs));
+        assertTrue(filter.isDuplicate("pub", "old", windowMs + 1));
+
+        DuplicateFilter expiring = new DuplicateFilter(1000, 1e-6, windowMs, 0);
+        expiring.isDuplicate("pub", "old", 0);
+        expiring.isDuplicate("pub", "other", windowMs);       // "old" moves to previous
+        expiring.isDuplicate("pub", "other", 2 * windowMs);   // and is rotated out
+        assertFalse(expiring.isDuplicate("pub", "old", 2 * windowMs));
+
+        // Idle for two windows: both generations are cleared at once
+        DuplicateFilter idle = new DuplicateFilter(1000, 1e-6, windowMs, 0);
+        idle.isDuplicate("pub", "old", 0);
+        assertFalse(idle.isDuplicate("pub", "old", 2 * windowMs));
+    }
+
+    @Test
+    void memoryIsFixedBySizingNotByTraffic() {
+        DuplicateFilter filter = new DuplicateFilter(1000, 1e-6, 60_000);
+        long before = filter.memoryBytes();
+        for (int i = 0; i < 50_000; i++) {
+            filter.isDuplicate("pub", String.valueOf(i));
+        }
+        assertEquals(before, filter.memoryBytes());
+    }
+}
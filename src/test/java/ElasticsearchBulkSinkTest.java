@@ -0,0 +1,209 @@
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Runs the sink against a local HTTP stand-in for the _bulk endpoint
+ */
+class ElasticsearchBulkSinkTest {
+
+    private static final String TIMESTAMP = "2024-05-06T07:08:09.000Z";
+    private static final String OK = "{\"took\":1,\"errors\":false,\"items\":[]}";
+
+    /**
+     * A scripted reply; once the script runs out every request gets 200 with no errors
+     */
+    private static final class Reply {
+        final int status;
+        final String body;
+
+        Reply(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    @TempDir
+    Path bufferDir;
+
+    private HttpServer server;
+    private final BlockingQueue<Reply> replies = new LinkedBlockingQueue<>();
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    private final List<String> encodings = new CopyOnWriteArrayList<>();
+    private ElasticsearchBulkSink sink;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/_bulk", exchange -> {
+            encodings.add(String.valueOf(exchange.getRequestHeaders().getFirst("Content-Encoding")));
+            try (InputStream in = new GZIPInputStream(exchange.getRequestBody())) {
+                requests.add(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            }
+            Reply reply = replies.poll();
+            byte[] body = (reply == null ? OK : reply.body).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(reply == null ? 200 : reply.status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stop() {
+        if (sink != null) {
+            sink.close();
+        }
+        server.stop(0);
+    }
+
+    private ElasticsearchBulkSink create(int maxRetries) {
+        sink = new ElasticsearchBulkSink("http://127.0.0.1:" + server.getAddress().getPort(), "", "",
+            1000, 100, 1024 * 1024, 20, maxRetries, 5, bufferDir);
+        return sink;
+    }
+
+    private static String event(int n) {
+        return "{\"n\":" + n + "}";
+    }
+
+    private static String bulkItems(int... statuses) {
+        StringBuilder body = new StringBuilder("{\"took\":1,\"errors\":true,\"items\":[");
+        for (int i = 0; i < statuses.length; i++) {
+            int status = statuses[i];
+            body.append(i > 0 ? "," : "").append("{\"index\":{\"status\":").append(status);
+            if (status == 429) {
+                body.append(",\"error\":{\"type\":\"es_rejected_execution_exception\"}");
+            } else if (status >= 300) {
+                body.append(",\"error\":{\"type\":\"mapper_parsing_exception\"}");
+            }
+            body.append("}}");
+        }
+        return body.append("]}").toString();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("condition not met within 10s");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private List<Path> spilledFiles() throws IOException {
+        try (Stream<Path> files = Files.list(bufferDir)) {
+            return files.filter(f -> f.getFileName().toString().endsWith(".ndjson")).collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    void sendsGzipNdjsonToTheDailyIndex() throws Exception {
+        create(0);
+        for (int i = 0; i < 3; i++) {
+            sink.enqueue(TIMESTAMP, event(i));
+        }
+        await(() -> sink.sentCount() == 3);
+
+        assertEquals("gzip", encodings.get(0));
+        String action = "{\"index\":{\"_index\":\"mqtt5-validation-2024.05.06\"}}\n";
+        assertEquals(action + event(0) + "\n" + action + event(1) + "\n" + action + event(2) + "\n",
+            String.join("", requests));
+    }
+
+    @Test
+    void retriesWholeRequestRejections() throws Exception {
+        replies.add(new Reply(429, "{\"error\":\"too many requests\"}"));
+        replies.add(new Reply(503, "{}"));
+        create(3);
+        sink.enqueue(TIMESTAMP, event(1));
+        sink.enqueue(TIMESTAMP, event(2));
+        await(() -> sink.sentCount() == 2);
+
+        assertEquals(3, requests.size());
+        assertEquals(requests.get(0), requests.get(2));
+        assertEquals(0, sink.spilledCount());
+    }
+
+    @Test
+    void retriesOnlyItemsPushedBack() throws Exception {
+        replies.add(new Reply(200, bulkItems(201, 429, 400, 503)));
+        create(3);
+        for (int i = 0; i < 4; i++) {
+            sink.enqueue(TIMESTAMP, event(i));
+        }
+        await(() -> sink.sentCount() == 3);
+
+        assertEquals(2, requests.size());
+        String retry = requests.get(1);
+        assertTrue(retry.contains(event(1)) && retry.contains(event(3)), retry);
+        assertEquals(4, retry.split("\n").length);
+        assertEquals(1, sink.itemErrorCount());
+        assertEquals(0, sink.spilledCount());
+    }
+
+    @Test
+    void spillsWhatIsStillPushedBackAndResendsItLater() throws Exception {
+        replies.add(new Reply(200, bulkItems(201, 429)));
+        replies.add(new Reply(429, "{}"));
+        create(0);
+        sink.enqueue(TIMESTAMP, event(0));
+        sink.enqueue(TIMESTAMP, event(1));
+
+        // Only the pushed-back item is spilled; the next re-send fails as a whole and keeps it
+        await(() -> sink.spilledCount() == 1 && requests.size() >= 2);
+        assertEquals(1, sink.sentCount());
+        assertTrue(requests.get(1).contains(event(1)) && !requests.get(1).contains(event(0)));
+
+        // The stand-in recovers: the spill drains without new events
+        await(() -> sink.sentCount() == 2);
+        await(() -> {
+            try {
+                return spilledFiles().isEmpty();
+            } catch (IOException e) {
+                return false;
+            }
+        });
+    }
+
+    @Test
+    void partiallyResentSpillKeepsOnlyTheRemainingItems() throws Exception {
+        String action = "{\"index\":{\"_index\":\"mqtt5-validation-2024.05.06\"}}\n";
+        Path file = bufferDir.resolve("es-buffer-1-000000.ndjson");
+        Files.write(file, (action + event(0) + "\n" + action + event(1) + "\n").getBytes(StandardCharsets.UTF_8));
+        replies.add(new Reply(200, bulkItems(201, 429)));
+        replies.add(new Reply(503, "{}"));
+        replies.add(new Reply(503, "{}"));
+        create(0);
+
+        await(() -> requests.size() >= 2);
+        String resent = requests.get(1);
+        assertEquals(action + event(1) + "\n", resent);
+        await(() -> sink.sentCount() == 2);
+    }
+}
@@ -0,0 +1,92 @@
+import org.eclipse.paho.mqttv5.common.packet.MqttProperties;
+import org.eclipse.paho.mqttv5.common.packet.UserProperty;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PayloadCodecTest {
+
+    private static final MqttProperties DEFLATED = encoding("deflate");
+
+    private static MqttProperties encoding(String value) {
+        MqttProperties properties = new MqttProperties();
+        properties.setUserProperties(Collections.singletonList(new UserProperty(PayloadCodec.CONTENT_ENCODING, value)));
+        return properties;
+    }
+
+    private static byte[] payload(int bytes) {
+        byte[] payload = new byte[bytes];
+        for (int i = 0; i < bytes; i++) {
+            payload[i] = (byte) ('a' + i % 26);
+        }
+        return payload;
+    }
+
+    private static PayloadCodec codec(int maxInflatedBytes) {
+        return new PayloadCodec(Deflater.DEFAULT_COMPRESSION, Collections.emptyList(), maxInflatedBytes);
+    }
+
+    @Test
+    void roundTripsSmallAndLargePayloads() throws IOException {
+        PayloadCodec codec = codec(1 << 20);
+        for (int size : new int[] {0, 10, 8192, 100_000}) {
+            byte[] payload = payload(size);
+            assertArrayEquals(payload, codec.decode(codec.deflate(payload), DEFLATED));
+        }
+    }
+
+    @Test
+    void roundTripsWithADictionary() throws IOException {
+        byte[] dictionary = "{\"sensorId\":\"sensor-\",\"temperature\":".getBytes(StandardCharsets.UTF_8);
+        PayloadCodec codec = new PayloadCodec(Deflater.BEST_COMPRESSION, Collections.singletonList(dictionary), 1 << 20);
+        byte[] payload = "{\"sensorId\":\"sensor-7\",\"temperature\":21.5}".getBytes(StandardCharsets.UTF_8);
+        MqttProperties properties = encoding("deflate;dict=" + PayloadCodec.idOf(dictionary));
+        assertArrayEquals(payload, codec.decode(codec.deflate(payload), properties));
+    }
+
+    @Test
+    void acceptsPayloadsExactlyAtTheLimit() throws IOException {
+        PayloadCodec codec = codec(5000);
+        byte[] payload = payload(5000);
+        assertArrayEquals(payload, codec.decode(codec.deflate(payload), DEFLATED));
+    }
+
+    @Test
+    void enforcesALimitBelowTheInitialBuffer() {
+        PayloadCodec codec = codec(100);
+        byte[] compressed = codec.deflate(payload(101));
+        assertThrows(IOException.class, () -> codec.decode(compressed, DEFLATED));
+    }
+
+    @Test
+    void enforcesTheLimitAfterALargeDeflateOnTheSameThread() throws IOException {
+        PayloadCodec codec = codec(20_000);
+        // Incompressible input makes deflate grow this thread's buffer well past the limit
+        byte[] noise = new byte[200_000];
+        new Random(1).nextBytes(noise);
+        codec.deflate(noise);
+
+        byte[] compressed = codec.deflate(payload(50_000));
+        assertThrows(IOException.class, () -> codec.decode(compressed, DEFLATED));
+        byte[] small = payload(20_000);
+        assertArrayEquals(small, codec.decode(codec.deflate(small), DEFLATED));
+    }
+
+    @Test
+    void rejectsTruncatedAndUnknownEncodings() {
+        PayloadCodec codec = codec(1 << 20);
+        byte[] compressed = codec.deflate(payload(10_000));
+        byte[] truncated = Arrays.copyOf(compressed, compressed.length / 2);
+        assertThrows(IOException.class, () -> codec.decode(truncated, DEFLATED));
+        assertThrows(IOException.class, () -> codec.decode(compressed, encoding("br")));
+        assertThrows(IOException.class, () -> codec.decode(compressed, encoding("deflate;dict=abc")));
+    }
+}
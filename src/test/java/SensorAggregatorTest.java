@@ -0,0 +1,158 @@
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SensorAggregatorTest {
+
+    // Slides this long never elapse during a test, so only explicit emit() calls advance windows
+    private static final long SLIDE_MS = 1_000_000_000_000L;
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private final List<JsonNode> chunks = new ArrayList<>();
+    private SensorAggregator aggregator;
+
+    @AfterEach
+    void close() {
+        if (aggregator != null) {
+            aggregator.close();
+        }
+    }
+
+    private SensorAggregator create(long windowMs, int maxSensors, int idleWindows) {
+        aggregator = new SensorAggregator(windowMs, SLIDE_MS, maxSensors, idleWindows, 500, json -> {
+            try {
+                chunks.add(JSON.readTree(json));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        return aggregator;
+    }
+
+    /**
+     * Results of the last emit, by sensor id
+     */
+    private Map<String, JsonNode> emit() {
+        chunks.clear();
+        aggregator.emit();
+        Map<String, JsonNode> results = new HashMap<>();
+        for (JsonNode chunk : chunks) {
+            for (JsonNode result : chunk.get("results")) {
+                results.put(result.get("sensor_id").asText(), result);
+            }
+        }
+        return results;
+    }
+
+    @Test
+    void aggregatesEachSensorSeparately() {
+        create(SLIDE_MS, 1000, 10);
+        aggregator.record("a", 10.0);
+        aggregator.record("a", 30.0);
+        aggregator.record("a", 20.0);
+        aggregator.record("b", -5.0);
+
+        Map<String, JsonNode> results = emit();
+        assertEquals(2, results.size());
+        JsonNode a = results.get("a");
+        assertEquals(3, a.get("count").asLong());
+        assertEquals(10.0, a.get("min").asDouble());
+        assertEquals(30.0, a.get("max").asDouble());
+        assertEquals(20.0, a.get("avg").asDouble(), 1e-9);
+        assertEquals(1, results.get("b").get("count").asLong());
+        assertEquals(-5.0, results.get("b").get("min").asDouble());
+    }
+
+    @Test
+    void keepsEverySensorAcrossTableGrowth() {
+        create(SLIDE_MS, 100_000, 10);
+        int sensors = 5000; // beyond the initial 1024 slots, so the table is rebuilt several times
+        for (int round = 0; round < 3; round++) {
+            for (int s = 0; s < sensors; s++) {
+                aggregator.record("sensor-" + s, s + round);
+            }
+        }
+        assertEquals(sensors, aggregator.sensorCount());
+
+        Map<String, JsonNode> results = emit();
+        assertEquals(sensors, results.size());
+        for (int s = 0; s < sensors; s++) {
+            JsonNode result = results.get("sensor-" + s);
+            assertEquals(3, result.get("count").asLong());
+            assertEquals(s, result.get("min").asDouble());
+            assertEquals(s + 2, result.get("max").asDouble());
+        }
+    }
+
+    @Test
+    void countsReadingsBeyondMaxSensorsAsOverflow() {
+        create(SLIDE_MS, 3, 10);
+        for (String sensor : new String[] {"a", "b", "c", "d", "e"}) {
+            aggregator.record(sensor, 1.0);
+        }
+        aggregator.record("a", 2.0);
+
+        Map<String, JsonNode> results = emit();
+        assertEquals(3, results.size());
+        assertEquals(2, results.get("a").get("count").asLong());
+        assertEquals(2, chunks.get(0).get("overflow_readings").asLong());
+        assertEquals(3, chunks.get(0).get("sensors_tracked").asInt());
+    }
+
+    @Test
+    void slidingWindowDropsTheOldestBucket() {
+        create(2 * SLIDE_MS, 1000, 10);
+        aggregator.record("a", 1.0);
+        assertEquals(1, emit().get("a").get("count").asLong());
+
+        aggregator.record("a", 3.0);
+        JsonNode both = emit().get("a");
+        assertEquals(2, both.get("count").asLong());
+        assertEquals(2.0, both.get("avg").asDouble(), 1e-9);
+
+        JsonNode latest = emit().get("a");
+        assertEquals(1, latest.get("count").asLong());
+        assertEquals(3.0, latest.get("min").asDouble());
+    }
+
+    @Test
+    void evictsIdleSensorsAndKeepsLookupsConsistent() {
+        create(SLIDE_MS, 1000, 1);
+        aggregator.record("idle", 1.0);
+        aggregator.record("busy", 1.0);
+        emit();
+        aggregator.record("busy", 2.0);
+        emit();
+        aggregator.record("busy", 3.0);
+        emit();
+        assertEquals(1, aggregator.sensorCount());
+
+        // Slots were re-packed: the surviving and a new sensor still resolve to their own state
+        aggregator.record("busy", 4.0);
+        aggregator.record("new", 7.0);
+        Map<String, JsonNode> results = emit();
+        assertFalse(results.containsKey("idle"));
+        assertEquals(4.0, results.get("busy").get("min").asDouble());
+        assertEquals(7.0, results.get("new").get("min").asDouble());
+        assertTrue(aggregator.sensorCount() <= 2);
+    }
+
+    @Test
+    void emitsNothingWithoutReadings() {
+        create(SLIDE_MS, 1000, 10);
+        emit();
+        assertTrue(chunks.isEmpty());
+        assertNull(emit().get("a"));
+    }
+}
@@ -0,0 +1,117 @@
+import org.eclipse.paho.mqttv5.common.packet.MqttProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SubscriptionRouterTest {
+
+    private static SubscriptionRouter.Route route(int id, String filter) {
+        return new SubscriptionRouter.Route(id, "r" + id, filter, "schema", false, null, 1);
+    }
+
+    private static SubscriptionRouter router(String... filters) {
+        SubscriptionRouter.Route[] routes = new SubscriptionRouter.Route[filters.length];
+        for (int i = 0; i < filters.length; i++) {
+            routes[i] = route(i + 1, filters[i]);
+        }
+        return new SubscriptionRouter(Arrays.asList(routes));
+    }
+
+    private static Integer matchId(SubscriptionRouter router, String topic) {
+        SubscriptionRouter.Route route = router.match(topic);
+        return route == null ? null : route.id;
+    }
+
+    private static MqttProperties identifiers(Integer... ids) {
+        MqttProperties properties = new MqttProperties();
+        properties.setSubscriptionIdentifiers(Arrays.asList(ids));
+        return properties;
+    }
+
+    @Test
+    void matchesExactAndSingleLevelWildcards() {
+        SubscriptionRouter router = router("a/b/c", "a/+/c", "x/+");
+        assertEquals(1, matchId(router, "a/b/c"));
+        assertEquals(2, matchId(router, "a/z/c"));
+        assertEquals(3, matchId(router, "x/y"));
+        assertNull(matchId(router, "a/b"));
+        assertNull(matchId(router, "a/b/c/d"));
+        assertNull(matchId(router, "x/y/z"));
+        // '+' matches an empty level
+        assertEquals(3, matchId(router, "x/"));
+    }
+
+    @Test
+    void multiLevelWildcardAlsoMatchesItsParent() {
+        SubscriptionRouter router = router("sensors/#");
+        assertEquals(1, matchId(router, "sensors"));
+        assertEquals(1, matchId(router, "sensors/a"));
+        assertEquals(1, matchId(router, "sensors/a/b/c"));
+        assertNull(matchId(router, "other/a"));
+    }
+
+    @Test
+    void lowestIdWinsAmongSeveralMatches() {
+        SubscriptionRouter router = router("#", "x/+", "x/y");
+        assertEquals(1, matchId(router, "x/y"));
+        assertEquals(1, matchId(router, "zz"));
+
+        SubscriptionRouter specificFirst = router("x/y", "x/+", "#");
+        assertEquals(1, matchId(specificFirst, "x/y"));
+        assertEquals(2, matchId(specificFirst, "x/q"));
+        assertEquals(3, matchId(specificFirst, "zz"));
+    }
+
+    @Test
+    void firstLevelWildcardsDoNotMatchDollarTopics() {
+        SubscriptionRouter router = router("+/x", "#", "$SYS/#");
+        assertEquals(3, matchId(router, "$SYS/x"));
+        assertEquals(1, matchId(router, "a/x"));
+        assertEquals(2, matchId(router, "a/y"));
+
+        SubscriptionRouter wildcardsOnly = router("#", "+/x");
+        assertNull(matchId(wildcardsOnly, "$SYS/x"));
+    }
+
+    @Test
+    void sharedSubscriptionPrefixIsIgnoredForMatching() {
+        SubscriptionRouter router = router("$share/g/a/#", "b/+");
+        assertEquals(1, matchId(router, "a"));
+        assertEquals(1, matchId(router, "a/q"));
+        assertEquals(2, matchId(router, "b/c"));
+        assertNull(matchId(router, "g/a"));
+    }
+
+    @Test
+    void routesBySubscriptionIdentifierBeforeTopic() {
+        SubscriptionRouter router = router("a/#", "b/#", "c/#");
+        // The echoed identifier wins even when the topic would match another route
+        assertEquals(3, router.route("a/x", identifiers(3)).id);
+        // Overlapping subscriptions echo several identifiers: the lowest wins
+        assertEquals(2, router.route("b/x", identifiers(3, 2)).id);
+    }
+
+    @Test
+    void unknownIdentifiersFallBackToTheTopic() {
+        SubscriptionRouter router = router("a/#", "b/#");
+        assertEquals(2, router.route("b/x", identifiers(7)).id);
+        assertEquals(1, router.route("a/x", null).id);
+        assertEquals(1, router.route("a/x", new MqttProperties()).id);
+        assertNull(router.route("z", identifiers(0)));
+    }
+
+    @Test
+    void rejectsDuplicateOrOutOfRangeIds() {
+        List<SubscriptionRouter.Route> duplicate = Arrays.asList(route(1, "a"), route(1, "b"));
+        assertThrows(IllegalArgumentException.class, () -> new SubscriptionRouter(duplicate));
+        List<SubscriptionRouter.Route> gap = Arrays.asList(route(1, "a"), route(3, "b"));
+        assertThrows(IllegalArgumentException.class, () -> new SubscriptionRouter(gap));
+        List<SubscriptionRouter.Route> zero = Arrays.asList(route(0, "a"));
+        assertThrows(IllegalArgumentException.class, () -> new SubscriptionRouter(zero));
+    }
+}
@@ -0,0 +1,94 @@
+import org.eclipse.paho.mqttv5.common.packet.UserProperty;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TrustMarkerTest {
+
+    private static final byte[] SECRET = "shared-secret".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] PAYLOAD = "{\"temperature\":21.5}".getBytes(StandardCharsets.UTF_8);
+
+    private final TrustMarker marker = new TrustMarker("k1", SECRET);
+
+    private static Map<String, Object> headers() {
+        Map<String, Object> headers = new HashMap<>();
+        headers.put("SCHEMA_ID_STRING", "sensor-reading");
+        headers.put("solace.schema.version", 3);
+        return headers;
+    }
+
+    private static String stamp(TrustMarker marker, Map<String, Object> headers, byte[] payload) {
+        List<UserProperty> properties = new ArrayList<>();
+        marker.stamp(headers, payload, properties);
+        assertEquals(1, properties.size());
+        assertEquals(TrustMarker.PROPERTY, properties.get(0).getKey());
+        return properties.get(0).getValue();
+    }
+
+    @Test
+    void stampedMessageVerifies() {
+        String mark = stamp(marker, headers(), PAYLOAD);
+        assertTrue(mark.startsWith("k1:"));
+        assertEquals(TrustMarker.Verdict.TRUSTED, marker.verify(headers(), PAYLOAD, mark));
+        // A separate instance with the same key (the subscriber) agrees
+        assertEquals(TrustMarker.Verdict.TRUSTED, new TrustMarker("k1", SECRET.clone()).verify(headers(), PAYLOAD, mark));
+    }
+
+    @Test
+    void missingMarkIsUnmarked() {
+        assertEquals(TrustMarker.Verdict.UNMARKED, marker.verify(headers(), PAYLOAD, null));
+    }
+
+    @Test
+    void tamperedPayloadIsAMismatch() {
+        String mark = stamp(marker, headers(), PAYLOAD);
+        byte[] tampered = PAYLOAD.clone();
+        tampered[tampered.length - 2] = '6';
+        assertEquals(TrustMarker.Verdict.MISMATCH, marker.verify(headers(), tampered, mark));
+    }
+
+    @Test
+    void changedSchemaHeadersAreAMismatch() {
+        String mark = stamp(marker, headers(), PAYLOAD);
+
+        Map<String, Object> otherSchema = headers();
+        otherSchema.put("SCHEMA_ID_STRING", "other-schema");
+        assertEquals(TrustMarker.Verdict.MISMATCH, marker.verify(otherSchema, PAYLOAD, mark));
+
+        Map<String, Object> otherVersion = headers();
+        otherVersion.put("solace.schema.version", 4);
+        assertEquals(TrustMarker.Verdict.MISMATCH, marker.verify(otherVersion, PAYLOAD, mark));
+    }
+
+    @Test
+    void nonSerdesHeadersAreNotCovered() {
+        String mark = stamp(marker, headers(), PAYLOAD);
+        Map<String, Object> withExtra = headers();
+        withExtra.put("trace-id", "abc");
+        assertEquals(TrustMarker.Verdict.TRUSTED, marker.verify(withExtra, PAYLOAD, mark));
+    }
+
+    @Test
+    void otherKeyOrKeyIdIsAMismatch() {
+        String mark = stamp(marker, headers(), PAYLOAD);
+        TrustMarker otherSecret = new TrustMarker("k1", "another-secret".getBytes(StandardCharsets.UTF_8));
+        assertEquals(TrustMarker.Verdict.MISMATCH, otherSecret.verify(headers(), PAYLOAD, mark));
+
+        TrustMarker otherKeyId = new TrustMarker("k2", SECRET);
+        assertEquals(TrustMarker.Verdict.MISMATCH, otherKeyId.verify(headers(), PAYLOAD, mark));
+    }
+
+    @Test
+    void malformedMarksAreMismatches() {
+        for (String mark : new String[] {"", "k1", ":abc", "k1:not base64!", "k1:"}) {
+            assertEquals(TrustMarker.Verdict.MISMATCH, marker.verify(headers(), PAYLOAD, mark), mark);
+        }
+    }
+}